@@ -0,0 +1,67 @@
+package com.davidfandino.digital_signature_api.benchmark;
+
+import com.davidfandino.digital_signature_api.DigitalSignatureApiApplication;
+import com.davidfandino.digital_signature_api.dto.UserDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
+import com.davidfandino.digital_signature_api.service.UserService;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Boots the application, without the web layer unless the benchmark drives it
+ * over HTTP, so the benchmarks exercise the real services, repositories and
+ * caches against the in-memory database.
+ */
+final class BenchmarkContext {
+
+    private static final AtomicLong NIF_SEQUENCE = new AtomicLong();
+
+    private BenchmarkContext() {
+    }
+
+    static ConfigurableApplicationContext start(String... properties) {
+        return start(WebApplicationType.NONE, properties);
+    }
+
+    static ConfigurableApplicationContext startWeb(String... properties) {
+        return start(WebApplicationType.SERVLET, Stream.concat(Stream.of("--server.port=0"), Stream.of(properties))
+                .toArray(String[]::new));
+    }
+
+    private static ConfigurableApplicationContext start(WebApplicationType webApplicationType, String... properties) {
+        String[] args = Stream.concat(Stream.of("--logging.level.root=WARN"), Stream.of(properties))
+                .toArray(String[]::new);
+        return new SpringApplicationBuilder(DigitalSignatureApiApplication.class)
+                .web(webApplicationType)
+                .logStartupInfo(false)
+                .run(args);
+    }
+
+    static String createUser(ConfigurableApplicationContext context) {
+        String nif = "BENCH" + NIF_SEQUENCE.incrementAndGet();
+        UserDto userDto = new UserDto();
+        userDto.setFirstName("Bench");
+        userDto.setLastName("Mark");
+        userDto.setNif(nif);
+        context.getBean(UserService.class).createUser(userDto);
+        return nif;
+    }
+
+    static String createUserWithKeys(ConfigurableApplicationContext context, KeyAlgorithm keyAlgorithm) throws Exception {
+        String nif = createUser(context);
+        context.getBean(UserKeysService.class).generateKeys(nif, keyAlgorithm);
+        return nif;
+    }
+
+    static byte[] document(int size) {
+        byte[] document = new byte[size];
+        new Random(size).nextBytes(document);
+        return document;
+    }
+}
@@ -0,0 +1,97 @@
+package com.davidfandino.digital_signature_api.benchmark;
+
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.service.SignService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Verification requests over HTTP from many concurrent clients with the key
+ * caches disabled, so every request blocks on the repository lookups. Compares
+ * the bounded Tomcat platform-thread pool against virtual threads (JDK 21+;
+ * on older JDKs spring.threads.virtual.enabled is ignored and both runs use
+ * platform threads). Point datasourceUrl at a networked database to make the
+ * lookups representative of production I/O latency. Admission control is off by
+ * default, as it would answer part of the 256 clients with 503 instead of
+ * measuring how each thread model queues them.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 10)
+@Measurement(iterations = 3, time = 10)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@Threads(256)
+@State(Scope.Benchmark)
+public class ConcurrentRequestBenchmark {
+
+    @Param({"false", "true"})
+    public boolean virtualThreads;
+
+    @Param({"50"})
+    public int tomcatMaxThreads;
+
+    @Param({"false"})
+    public boolean admissionControl;
+
+    @Param({"jdbc:h2:mem:testdb;DB_CLOSE_DELAY=-1"})
+    public String datasourceUrl;
+
+    private ConfigurableApplicationContext context;
+    private URI verifyUri;
+    private String signatureBase64;
+    private byte[] document;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.startWeb(
+                "--spring.threads.virtual.enabled=" + virtualThreads,
+                "--server.tomcat.threads.max=" + tomcatMaxThreads,
+                "--spring.datasource.url=" + datasourceUrl,
+                "--app.admission.enabled=" + admissionControl,
+                "--spring.datasource.hikari.maximum-pool-size=" + tomcatMaxThreads,
+                "--app.cache.private-key.max-size=0",
+                "--app.cache.public-key.max-size=0");
+
+        String nif = BenchmarkContext.createUserWithKeys(context, KeyAlgorithm.EC_P256);
+        document = BenchmarkContext.document(1024);
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(nif);
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString(document));
+        signatureBase64 = context.getBean(SignService.class).signDocument(signDocumentDto);
+
+        String port = context.getEnvironment().getProperty("local.server.port");
+        verifyUri = URI.create("http://localhost:" + port + "/api/signature/verify/" + nif);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class Client {
+        final HttpClient httpClient = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+    }
+
+    @Benchmark
+    public String verifyDocument(Client client) throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(verifyUri)
+                .header("Content-Type", "application/octet-stream")
+                .header("X-Signature", signatureBase64)
+                .POST(HttpRequest.BodyPublishers.ofByteArray(document))
+                .build();
+        HttpResponse<String> response = client.httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.statusCode());
+        }
+        return response.body();
+    }
+}
@@ -0,0 +1,63 @@
+package com.davidfandino.digital_signature_api.benchmark;
+
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.KeyPair;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Key pair generation on its own and through {@link UserKeysService}, which
+ * adds the pool, the AES encryption of the private key and the insert.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class KeyGenerationBenchmark {
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public KeyAlgorithm algorithm;
+
+    @Param({"true", "false"})
+    public boolean keyPool;
+
+    private ConfigurableApplicationContext context;
+    private UserKeysService userKeysService;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = BenchmarkContext.start("--app.keypool.enabled=" + keyPool);
+        userKeysService = context.getBean(UserKeysService.class);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    public static class NewUser {
+        String nif;
+
+        @Setup(Level.Invocation)
+        public void setUp(KeyGenerationBenchmark benchmark) {
+            nif = BenchmarkContext.createUser(benchmark.context);
+        }
+    }
+
+    @Benchmark
+    public KeyPair generateKeyPair() throws Exception {
+        return algorithm.generateKeyPair();
+    }
+
+    @Benchmark
+    public UserKeys generateKeys(NewUser newUser) throws Exception {
+        return userKeysService.generateKeys(newUser.nif, algorithm);
+    }
+}
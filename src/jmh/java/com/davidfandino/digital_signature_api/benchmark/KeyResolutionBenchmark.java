@@ -0,0 +1,93 @@
+package com.davidfandino.digital_signature_api.benchmark;
+
+import com.davidfandino.digital_signature_api.cache.PrivateKeyCache;
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.repository.NifPrivateKey;
+import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
+import com.davidfandino.digital_signature_api.service.SignService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.PrivateKey;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The stages {@link SignService} goes through before signing: the repository
+ * lookups, the AES decryption and the PKCS#8 parsing, plus the cached path
+ * that skips them.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class KeyResolutionBenchmark {
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public KeyAlgorithm algorithm;
+
+    private ConfigurableApplicationContext context;
+    private SignService signService;
+    private PrivateKeyCache privateKeyCache;
+    private UserKeysRepository userKeysRepository;
+    private CryptoEngine cryptoEngine;
+    private String nif;
+    private byte[] encryptedPrivateKey;
+    private UUID userUUID;
+    private byte[] decryptedPrivateKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        signService = context.getBean(SignService.class);
+        privateKeyCache = context.getBean(PrivateKeyCache.class);
+        userKeysRepository = context.getBean(UserKeysRepository.class);
+        cryptoEngine = context.getBean(CryptoEngine.class);
+
+        nif = BenchmarkContext.createUserWithKeys(context, algorithm);
+        NifPrivateKey nifPrivateKey = userKeysRepository.findPrivateKeyByNif(nif).orElseThrow();
+        encryptedPrivateKey = nifPrivateKey.getPrivateKey();
+        userUUID = nifPrivateKey.getUserUUID();
+        decryptedPrivateKey = cryptoEngine.decrypt(encryptedPrivateKey, userUUID);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public NifPrivateKey findPrivateKey() {
+        return userKeysRepository.findPrivateKeyByNif(nif).orElseThrow();
+    }
+
+    @Benchmark
+    public byte[] decryptPrivateKey() {
+        return cryptoEngine.decrypt(encryptedPrivateKey, userUUID);
+    }
+
+    @Benchmark
+    public PrivateKey parsePrivateKey() throws Exception {
+        return cryptoEngine.parsePrivateKey(decryptedPrivateKey, algorithm);
+    }
+
+    @Benchmark
+    public PrivateKey parsePrivateKeyWithNewKeyFactory() throws Exception {
+        return algorithm.newKeyFactory().generatePrivate(new PKCS8EncodedKeySpec(decryptedPrivateKey));
+    }
+
+    @Benchmark
+    public PrivateKey loadPrivateKey() {
+        privateKeyCache.invalidate(nif);
+        return signService.getPrivateKey(nif);
+    }
+
+    @Benchmark
+    public PrivateKey cachedPrivateKey() {
+        return signService.getPrivateKey(nif);
+    }
+}
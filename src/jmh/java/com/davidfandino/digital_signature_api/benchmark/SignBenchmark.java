@@ -0,0 +1,89 @@
+package com.davidfandino.digital_signature_api.benchmark;
+
+import com.davidfandino.digital_signature_api.cache.PrivateKeyCache;
+import com.davidfandino.digital_signature_api.cache.SignatureCache;
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.service.SignService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Document signing end to end through {@link SignService}, with the key cached,
+ * with a cold key and for a re-submitted document served from the signature
+ * cache, against the bare signature over the decoded bytes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class SignBenchmark {
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public KeyAlgorithm algorithm;
+
+    @Param({"1024", "1048576", "104857600"})
+    public int documentSize;
+
+    private ConfigurableApplicationContext context;
+    private SignService signService;
+    private PrivateKeyCache privateKeyCache;
+    private SignatureCache signatureCache;
+    private String nif;
+    private byte[] document;
+    private SignDocumentDto signDocumentDto;
+    private PrivateKey privateKey;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        signService = context.getBean(SignService.class);
+        privateKeyCache = context.getBean(PrivateKeyCache.class);
+        signatureCache = context.getBean(SignatureCache.class);
+
+        nif = BenchmarkContext.createUserWithKeys(context, algorithm);
+        document = BenchmarkContext.document(documentSize);
+        signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(nif);
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString(document));
+        privateKey = signService.getPrivateKey(nif);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public String signDocument() throws Exception {
+        signatureCache.invalidateAll();
+        return signService.signDocument(signDocumentDto);
+    }
+
+    @Benchmark
+    public String signDocumentColdKey() throws Exception {
+        signatureCache.invalidateAll();
+        privateKeyCache.invalidate(nif);
+        return signService.signDocument(signDocumentDto);
+    }
+
+    @Benchmark
+    public String signDocumentResubmitted() throws Exception {
+        return signService.signDocument(signDocumentDto);
+    }
+
+    @Benchmark
+    public byte[] signData() throws Exception {
+        Signature signature = algorithm.newSignature();
+        signature.initSign(privateKey);
+        signature.update(document);
+        return signature.sign();
+    }
+}
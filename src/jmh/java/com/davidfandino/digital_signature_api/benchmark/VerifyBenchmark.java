@@ -0,0 +1,79 @@
+package com.davidfandino.digital_signature_api.benchmark;
+
+import com.davidfandino.digital_signature_api.cache.PublicKeyCache;
+import com.davidfandino.digital_signature_api.cache.VerificationCache;
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.service.SignService;
+import com.davidfandino.digital_signature_api.service.SignatureVerificationService;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Signature verification through {@link SignatureVerificationService}, with
+ * the public key cached, with a cold key and for a re-verified document served
+ * from the verification cache.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+@State(Scope.Benchmark)
+public class VerifyBenchmark {
+
+    @Param({"RSA_2048", "EC_P256", "ED25519"})
+    public KeyAlgorithm algorithm;
+
+    @Param({"1024", "1048576", "104857600"})
+    public int documentSize;
+
+    private ConfigurableApplicationContext context;
+    private SignatureVerificationService signatureVerificationService;
+    private PublicKeyCache publicKeyCache;
+    private VerificationCache verificationCache;
+    private String nif;
+    private VerifySignatureDto verifySignatureDto;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        context = BenchmarkContext.start();
+        signatureVerificationService = context.getBean(SignatureVerificationService.class);
+        publicKeyCache = context.getBean(PublicKeyCache.class);
+        verificationCache = context.getBean(VerificationCache.class);
+
+        nif = BenchmarkContext.createUserWithKeys(context, algorithm);
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(nif);
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString(BenchmarkContext.document(documentSize)));
+        String signatureBase64 = context.getBean(SignService.class).signDocument(signDocumentDto);
+        verifySignatureDto = new VerifySignatureDto(signDocumentDto.getDocumentBase64(), signatureBase64, nif);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public boolean verifySignature() throws Exception {
+        verificationCache.invalidateAll();
+        return signatureVerificationService.verifySignature(verifySignatureDto);
+    }
+
+    @Benchmark
+    public boolean verifySignatureColdKey() throws Exception {
+        verificationCache.invalidateAll();
+        publicKeyCache.invalidate(nif);
+        return signatureVerificationService.verifySignature(verifySignatureDto);
+    }
+
+    @Benchmark
+    public boolean verifySignatureRepeated() throws Exception {
+        return signatureVerificationService.verifySignature(verifySignatureDto);
+    }
+}
@@ -0,0 +1,117 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import com.davidfandino.digital_signature_api.dto.CacheStatsDto;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Caffeine cache whose loaders run on the calling thread outside any lock: a
+ * synchronous Caffeine load runs inside ConcurrentHashMap.compute, which would
+ * pin a virtual thread for the whole repository lookup. Concurrent callers for
+ * the same key still wait for a single load.
+ */
+public class BoundedCache<K, V> {
+
+    private final String name;
+    private final AsyncCache<K, V> asyncCache;
+    private final Cache<K, V> cache;
+
+    public BoundedCache(String name, long maximumSize, Duration expireAfterWrite) {
+        this.name = name;
+        this.asyncCache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .buildAsync();
+        this.cache = asyncCache.synchronous();
+    }
+
+    /**
+     * Returns the cached value, loading it on a miss. A failed load is rethrown to
+     * its caller only: the pending entry is completed with null, which Caffeine
+     * drops without logging, and callers that were waiting for it load again, as
+     * with a synchronous cache. Missing users and keys are thus neither cached
+     * nor logged as cache failures.
+     */
+    public V get(K key, Function<? super K, ? extends V> loader) {
+        while (true) {
+            CompletableFuture<V> loading = new CompletableFuture<>();
+            CompletableFuture<V> value = asyncCache.get(key, (k, executor) -> loading);
+            if (value != loading) {
+                V cached = value.join();
+                if (cached != null) {
+                    return cached;
+                }
+                continue;
+            }
+            V loaded;
+            try {
+                loaded = loader.apply(key);
+            } catch (RuntimeException | Error e) {
+                loading.complete(null);
+                throw e;
+            }
+            loading.complete(loaded);
+            return loaded;
+        }
+    }
+
+    /**
+     * Returns the cached values for the given keys, loading all the missing ones
+     * with a single call to the loader. Keys the loader does not return are absent.
+     */
+    public Map<K, V> getAll(Iterable<? extends K> keys, Function<? super Set<? extends K>, ? extends Map<? extends K, ? extends V>> loader) {
+        return cache.getAll(keys, loader);
+    }
+
+    public V getIfPresent(K key) {
+        return cache.getIfPresent(key);
+    }
+
+    public void put(K key, V value) {
+        cache.put(key, value);
+    }
+
+    public void invalidate(K key) {
+        cache.invalidate(key);
+    }
+
+    /**
+     * Removes the entry only while it still maps to the given value, so that a value
+     * stored concurrently is kept.
+     */
+    public boolean invalidate(K key, V value) {
+        return cache.asMap().remove(key, value);
+    }
+
+    public void invalidateIf(Predicate<K> predicate) {
+        cache.asMap().keySet().removeIf(predicate);
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public CacheStatsDto stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatsDto(name, size(), stats.hitCount(), stats.missCount(),
+                stats.evictionCount(), stats.hitRate());
+    }
+}
@@ -0,0 +1,63 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import com.davidfandino.digital_signature_api.dto.CacheStatsDto;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Results computed with a user's key. Every entry records the key instance it
+ * was computed with, which acts as the key version: when the user's keys change
+ * the key caches load a new instance, entries of the old one are treated as
+ * misses, dropped and counted as misses in the statistics.
+ */
+public class KeyVersionedCache<K, V> extends BoundedCache<K, KeyVersionedCache.Entry<V>> {
+
+    private final boolean enabled;
+    private final LongAdder staleHits = new LongAdder();
+
+    public KeyVersionedCache(String name, boolean enabled, long maximumSize, Duration expireAfterWrite) {
+        super(name, maximumSize, expireAfterWrite);
+        this.enabled = enabled;
+    }
+
+    public record Entry<V>(Key keyVersion, V value) {
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Returns the value computed with this key instance, or null.
+     */
+    public V get(K key, Key keyVersion) {
+        Entry<V> entry = getIfPresent(key);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.keyVersion() != keyVersion) {
+            staleHits.increment();
+            invalidate(key, entry);
+            return null;
+        }
+        return entry.value();
+    }
+
+    public void put(K key, Key keyVersion, V value) {
+        put(key, new Entry<>(keyVersion, value));
+    }
+
+    @Override
+    public CacheStatsDto stats() {
+        CacheStatsDto stats = super.stats();
+        long stale = staleHits.sum();
+        long hits = stats.getHitCount() - stale;
+        long misses = stats.getMissCount() + stale;
+        stats.setHitCount(hits);
+        stats.setMissCount(misses);
+        stats.setHitRatio(hits + misses == 0 ? 1.0 : (double) hits / (hits + misses));
+        return stats;
+    }
+}
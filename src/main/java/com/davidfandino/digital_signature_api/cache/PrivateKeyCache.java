@@ -0,0 +1,27 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import com.davidfandino.digital_signature_api.event.UserKeysChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.PrivateKey;
+import java.time.Duration;
+
+/**
+ * Decrypted and parsed private keys by NIF, so repeated signatures skip the
+ * repository lookups, the AES decryption and the PKCS#8 parsing.
+ */
+@Component
+public class PrivateKeyCache extends BoundedCache<String, PrivateKey> {
+
+    public PrivateKeyCache(@Value("${app.cache.private-key.max-size:10000}") long maximumSize,
+                           @Value("${app.cache.private-key.ttl:1h}") Duration ttl) {
+        super("privateKeys", maximumSize, ttl);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserKeysChanged(UserKeysChangedEvent event) {
+        invalidate(event.getNif());
+    }
+}
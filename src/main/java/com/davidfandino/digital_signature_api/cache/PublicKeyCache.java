@@ -0,0 +1,27 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import com.davidfandino.digital_signature_api.event.UserKeysChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.security.PublicKey;
+import java.time.Duration;
+
+/**
+ * Parsed public keys by NIF, so a hot verification needs neither database
+ * access nor X.509 parsing.
+ */
+@Component
+public class PublicKeyCache extends BoundedCache<String, PublicKey> {
+
+    public PublicKeyCache(@Value("${app.cache.public-key.max-size:50000}") long maximumSize,
+                          @Value("${app.cache.public-key.ttl:1h}") Duration ttl) {
+        super("publicKeys", maximumSize, ttl);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserKeysChanged(UserKeysChangedEvent event) {
+        invalidate(event.getNif());
+    }
+}
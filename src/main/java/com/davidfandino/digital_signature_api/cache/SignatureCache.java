@@ -0,0 +1,45 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.PrivateKey;
+import java.time.Duration;
+
+/**
+ * Signatures by NIF and SHA-256 document digest, for the key types whose
+ * signatures are deterministic, so a re-submitted document is not signed again.
+ * The private key the signature was made with is the entry's key version.
+ */
+@Component
+public class SignatureCache extends KeyVersionedCache<SignatureCache.Key, byte[]> {
+
+    public SignatureCache(@Value("${app.cache.signature.enabled:true}") boolean enabled,
+                          @Value("${app.cache.signature.max-size:100000}") long maximumSize,
+                          @Value("${app.cache.signature.ttl:10m}") Duration ttl) {
+        super("signatures", enabled, maximumSize, ttl);
+    }
+
+    public record Key(String nif, ByteBuffer digest) {
+    }
+
+    /**
+     * Whether signatures made with the key are cached.
+     */
+    public boolean isCacheable(PrivateKey privateKey) {
+        return isEnabled() && KeyAlgorithm.fromKey(privateKey).isDeterministicSignature();
+    }
+
+    /**
+     * Returns the signature of the digest made with this private key, or null.
+     */
+    public byte[] get(String nif, byte[] digest, PrivateKey privateKey) {
+        return get(new Key(nif, ByteBuffer.wrap(digest)), privateKey);
+    }
+
+    public void put(String nif, byte[] digest, PrivateKey privateKey, byte[] signature) {
+        put(new Key(nif, ByteBuffer.wrap(digest)), privateKey, signature);
+    }
+}
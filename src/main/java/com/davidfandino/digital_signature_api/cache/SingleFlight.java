@@ -0,0 +1,68 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces concurrent calls for the same key: the first caller runs the call,
+ * callers arriving while it is in flight wait for and share its result or its
+ * exception. Nothing is kept once the call completes.
+ * <p>
+ * Calls carry a version, compared by identity, and only calls of the same
+ * version are shared, so a request made with a new key never receives the
+ * result computed with the previous one.
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+    private final Runnable onCoalesced;
+
+    public SingleFlight(Runnable onCoalesced) {
+        this.onCoalesced = onCoalesced;
+    }
+
+    @FunctionalInterface
+    public interface Call<V> {
+        V call() throws Exception;
+    }
+
+    private record Flight<V>(Object version, CompletableFuture<V> result) {
+    }
+
+    public V execute(K key, Object version, Call<V> call) throws Exception {
+        Flight<V> flight = new Flight<>(version, new CompletableFuture<>());
+        Flight<V> inFlight = flights.putIfAbsent(key, flight);
+        if (inFlight != null) {
+            if (inFlight.version() != version) {
+                return call.call();
+            }
+            onCoalesced.run();
+            return await(inFlight.result());
+        }
+        try {
+            V value = call.call();
+            flight.result().complete(value);
+            return value;
+        } catch (Exception | Error e) {
+            flight.result().completeExceptionally(e);
+            throw e;
+        } finally {
+            flights.remove(key, flight);
+        }
+    }
+
+    private static <V> V await(CompletableFuture<V> result) throws Exception {
+        try {
+            return result.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof Exception cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.davidfandino.digital_signature_api.cache;
+
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.ByteBuffer;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+
+/**
+ * Verification outcomes by NIF, SHA-256 document digest and SHA-256 of the
+ * signature, so re-verifying the same signed document skips the public key
+ * operation. Valid and invalid outcomes are both cached; the public key the
+ * signature was checked with is the entry's key version.
+ */
+@Component
+public class VerificationCache extends KeyVersionedCache<VerificationCache.Key, Boolean> {
+
+    public VerificationCache(@Value("${app.cache.verification.enabled:true}") boolean enabled,
+                             @Value("${app.cache.verification.max-size:100000}") long maximumSize,
+                             @Value("${app.cache.verification.ttl:10m}") Duration ttl) {
+        super("verifications", enabled, maximumSize, ttl);
+    }
+
+    public record Key(String nif, ByteBuffer documentDigest, ByteBuffer signatureDigest) {
+    }
+
+    public Key key(String nif, byte[] documentDigest, byte[] signatureBytes) throws NoSuchAlgorithmException {
+        return new Key(nif, ByteBuffer.wrap(documentDigest),
+                ByteBuffer.wrap(DigestSignatureUtil.newDigest().digest(signatureBytes)));
+    }
+}
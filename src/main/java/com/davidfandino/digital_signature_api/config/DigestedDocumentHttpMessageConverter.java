@@ -0,0 +1,103 @@
+package com.davidfandino.digital_signature_api.config;
+
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import com.davidfandino.digital_signature_api.utils.DigestedDocumentReader;
+import com.davidfandino.digital_signature_api.utils.ProtobufDocumentReader;
+import com.davidfandino.digital_signature_api.utils.StreamUtil;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractGenericHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Lets /api/sign and /api/signature/verify keep their JSON contract while the
+ * body is read through {@link DigestedDocumentReader}. The same requests are
+ * accepted in CBOR, read by the same reader, and in Protobuf, read by
+ * {@link ProtobufDocumentReader}, both with the document as raw bytes.
+ * <p>
+ * Whether the document must be kept besides its digest is decided by the
+ * predicate of the controller reading the request, so that signing resolves the
+ * private key and verifying the public key, each through its cache.
+ */
+public class DigestedDocumentHttpMessageConverter extends AbstractGenericHttpMessageConverter<DigestedDocumentDto> {
+
+    public static final MediaType APPLICATION_PROTOBUF = new MediaType("application", "x-protobuf");
+
+    private final JsonFactory jsonFactory;
+    private final CBORFactory cborFactory;
+    private final Function<Class<?>, Predicate<String>> requiresFullDocument;
+    private final int spoolThreshold;
+
+    public DigestedDocumentHttpMessageConverter(JsonFactory jsonFactory, CBORFactory cborFactory,
+                                                Function<Class<?>, Predicate<String>> requiresFullDocument,
+                                                int spoolThreshold) {
+        super(MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR, APPLICATION_PROTOBUF);
+        this.jsonFactory = jsonFactory;
+        this.cborFactory = cborFactory;
+        this.requiresFullDocument = requiresFullDocument;
+        this.spoolThreshold = spoolThreshold;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return DigestedDocumentDto.class.equals(clazz);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return DigestedDocumentDto.class.equals(type) && canRead(mediaType);
+    }
+
+    @Override
+    public DigestedDocumentDto read(Type type, Class<?> contextClass, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return read(requiresFullDocument.apply(contextClass), inputMessage);
+    }
+
+    @Override
+    protected DigestedDocumentDto readInternal(Class<? extends DigestedDocumentDto> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        return read(requiresFullDocument.apply(null), inputMessage);
+    }
+
+    private DigestedDocumentDto read(Predicate<String> requiresFullDocument, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        MediaType contentType = inputMessage.getHeaders().getContentType();
+        if (APPLICATION_PROTOBUF.isCompatibleWith(contentType)) {
+            try {
+                return ProtobufDocumentReader.read(new BufferedInputStream(inputMessage.getBody(), StreamUtil.CHUNK_SIZE),
+                        requiresFullDocument, spoolThreshold);
+            } catch (IOException e) {
+                throw new HttpMessageNotReadableException("Malformed sign/verify request: " + e.getMessage(), e, inputMessage);
+            }
+        }
+        JsonFactory factory = MediaType.APPLICATION_CBOR.isCompatibleWith(contentType) ? cborFactory : jsonFactory;
+        try (JsonParser parser = factory.createParser(inputMessage.getBody())) {
+            return DigestedDocumentReader.read(parser, requiresFullDocument, spoolThreshold);
+        } catch (IOException | IllegalArgumentException e) {
+            throw new HttpMessageNotReadableException("Malformed sign/verify request: " + e.getMessage(), e, inputMessage);
+        }
+    }
+
+    @Override
+    protected void writeInternal(DigestedDocumentDto digestedDocumentDto, Type type, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        throw new HttpMessageNotWritableException("DigestedDocumentDto is a request-only type");
+    }
+
+    @Override
+    protected boolean canWrite(MediaType mediaType) {
+        return false;
+    }
+}
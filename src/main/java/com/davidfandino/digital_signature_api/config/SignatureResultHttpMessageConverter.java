@@ -0,0 +1,134 @@
+package com.davidfandino.digital_signature_api.config;
+
+import com.davidfandino.digital_signature_api.dto.SignatureResultDto;
+import com.davidfandino.digital_signature_api.dto.VerificationResultDto;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.http.HttpInputMessage;
+import org.springframework.http.HttpOutputMessage;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.AbstractHttpMessageConverter;
+import org.springframework.http.converter.HttpMessageNotReadableException;
+import org.springframework.http.converter.HttpMessageNotWritableException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Writes sign and verify results in the representation chosen by the Accept
+ * header. The defaults keep the original contract, the signature as the raw
+ * Base64 string (also when JSON is accepted) and the outcome as a JSON boolean,
+ * while CBOR and Protobuf carry the signature as raw bytes:
+ * <pre>
+ * message SignatureResponse { bytes signature = 1; }
+ * message VerificationResponse { bool valid = 1; }
+ * </pre>
+ * Registered ahead of the JSON converter, so that an Accept of any type still
+ * selects the default representation.
+ */
+public class SignatureResultHttpMessageConverter extends AbstractHttpMessageConverter<Object> {
+
+    private static final MediaType TEXT_PLAIN_UTF8 = new MediaType(MediaType.TEXT_PLAIN, StandardCharsets.UTF_8);
+
+    private static final List<MediaType> SIGNATURE_MEDIA_TYPES = List.of(TEXT_PLAIN_UTF8, MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR, DigestedDocumentHttpMessageConverter.APPLICATION_PROTOBUF);
+    private static final List<MediaType> VERIFICATION_MEDIA_TYPES = List.of(MediaType.APPLICATION_JSON,
+            MediaType.APPLICATION_CBOR, DigestedDocumentHttpMessageConverter.APPLICATION_PROTOBUF);
+
+    private final CBORFactory cborFactory;
+
+    public SignatureResultHttpMessageConverter(CBORFactory cborFactory) {
+        super(TEXT_PLAIN_UTF8, MediaType.APPLICATION_JSON, MediaType.APPLICATION_CBOR,
+                DigestedDocumentHttpMessageConverter.APPLICATION_PROTOBUF);
+        this.cborFactory = cborFactory;
+    }
+
+    @Override
+    protected boolean supports(Class<?> clazz) {
+        return SignatureResultDto.class.equals(clazz) || VerificationResultDto.class.equals(clazz);
+    }
+
+    @Override
+    public List<MediaType> getSupportedMediaTypes(Class<?> clazz) {
+        if (SignatureResultDto.class.equals(clazz)) {
+            return SIGNATURE_MEDIA_TYPES;
+        }
+        return VerificationResultDto.class.equals(clazz) ? VERIFICATION_MEDIA_TYPES : List.of();
+    }
+
+    @Override
+    public boolean canRead(Class<?> clazz, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return supports(clazz) && (mediaType == null
+                || getSupportedMediaTypes(clazz).stream().anyMatch(supported -> supported.isCompatibleWith(mediaType)));
+    }
+
+    @Override
+    protected Object readInternal(Class<?> clazz, HttpInputMessage inputMessage)
+            throws IOException, HttpMessageNotReadableException {
+        throw new HttpMessageNotReadableException("Sign and verify results are response-only types", inputMessage);
+    }
+
+    @Override
+    protected void writeInternal(Object result, HttpOutputMessage outputMessage)
+            throws IOException, HttpMessageNotWritableException {
+        MediaType contentType = outputMessage.getHeaders().getContentType();
+        boolean protobuf = DigestedDocumentHttpMessageConverter.APPLICATION_PROTOBUF.isCompatibleWith(contentType);
+        boolean cbor = MediaType.APPLICATION_CBOR.isCompatibleWith(contentType);
+        OutputStream body = outputMessage.getBody();
+
+        if (result instanceof SignatureResultDto signatureResultDto) {
+            if (!protobuf && !cbor) {
+                body.write(signatureResultDto.getSignatureBase64().getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+            byte[] signature = Base64.getDecoder().decode(signatureResultDto.getSignatureBase64());
+            if (protobuf) {
+                body.write(0x0A);
+                writeVarint(body, signature.length);
+                body.write(signature);
+            } else {
+                try (JsonGenerator generator = createCborGenerator(body)) {
+                    generator.writeStartObject();
+                    generator.writeBinaryField("signature", signature);
+                    generator.writeEndObject();
+                }
+            }
+        } else {
+            boolean valid = ((VerificationResultDto) result).isValid();
+            if (protobuf) {
+                // Proto3 leaves fields with their default value, here false, out of the message
+                if (valid) {
+                    body.write(new byte[]{0x08, 0x01});
+                }
+            } else if (cbor) {
+                try (JsonGenerator generator = createCborGenerator(body)) {
+                    generator.writeStartObject();
+                    generator.writeBooleanField("valid", valid);
+                    generator.writeEndObject();
+                }
+            } else {
+                body.write(String.valueOf(valid).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private JsonGenerator createCborGenerator(OutputStream body) throws IOException {
+        return cborFactory.createGenerator(body).disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+    }
+
+    private static void writeVarint(OutputStream output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.write((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.write(value);
+    }
+}
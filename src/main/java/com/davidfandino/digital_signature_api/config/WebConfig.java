@@ -0,0 +1,53 @@
+package com.davidfandino.digital_signature_api.config;
+
+import com.davidfandino.digital_signature_api.controller.SignatureVerificationController;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlInterceptor;
+import com.davidfandino.digital_signature_api.service.KeyAlgorithmService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+@Configuration
+public class WebConfig implements WebMvcConfigurer {
+
+    private final ObjectMapper objectMapper;
+    private final KeyAlgorithmService keyAlgorithmService;
+    private final int spoolThreshold;
+    private final AdmissionControlInterceptor admissionControlInterceptor;
+    private final boolean admissionControlEnabled;
+
+    public WebConfig(ObjectMapper objectMapper, KeyAlgorithmService keyAlgorithmService,
+                     @Value("${app.document.spool-threshold:1048576}") int spoolThreshold,
+                     AdmissionControlInterceptor admissionControlInterceptor,
+                     @Value("${app.admission.enabled:true}") boolean admissionControlEnabled) {
+        this.objectMapper = objectMapper;
+        this.keyAlgorithmService = keyAlgorithmService;
+        this.spoolThreshold = spoolThreshold;
+        this.admissionControlInterceptor = admissionControlInterceptor;
+        this.admissionControlEnabled = admissionControlEnabled;
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        if (admissionControlEnabled) {
+            registry.addInterceptor(admissionControlInterceptor);
+        }
+    }
+
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        CBORFactory cborFactory = new CBORFactory();
+        converters.add(0, new DigestedDocumentHttpMessageConverter(objectMapper.getFactory(), cborFactory,
+                controller -> SignatureVerificationController.class.equals(controller)
+                        ? keyAlgorithmService::requiresFullDocumentToVerify
+                        : keyAlgorithmService::requiresFullDocumentToSign,
+                spoolThreshold));
+        converters.add(1, new SignatureResultHttpMessageConverter(cborFactory));
+    }
+}
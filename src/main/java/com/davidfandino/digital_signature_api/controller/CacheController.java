@@ -0,0 +1,27 @@
+package com.davidfandino.digital_signature_api.controller;
+
+import com.davidfandino.digital_signature_api.cache.BoundedCache;
+import com.davidfandino.digital_signature_api.dto.CacheStatsDto;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/cache")
+public class CacheController {
+
+    private final List<BoundedCache<?, ?>> caches;
+
+    public CacheController(List<BoundedCache<?, ?>> caches) {
+        this.caches = caches;
+    }
+
+    @GetMapping("/stats")
+    public ResponseEntity<List<CacheStatsDto>> stats() {
+        return ResponseEntity.ok(caches.stream().map(BoundedCache::stats).toList());
+    }
+
+}
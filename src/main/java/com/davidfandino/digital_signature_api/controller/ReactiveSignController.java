@@ -0,0 +1,82 @@
+package com.davidfandino.digital_signature_api.controller;
+
+import com.davidfandino.digital_signature_api.dto.SignDigestDto;
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.exception.UnsupportedKeyOperationException;
+import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlInterceptor;
+import com.davidfandino.digital_signature_api.service.ReactiveSignatureService;
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reactive edition of {@link SignController}, served instead of it when the
+ * application runs as a reactive web application.
+ */
+@RestController
+@RequestMapping("/api/sign")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSignController {
+
+    private final ReactiveSignatureService reactiveSignatureService;
+    private final String retryAfterSeconds;
+
+    public ReactiveSignController(ReactiveSignatureService reactiveSignatureService,
+                                  @Value("${app.admission.retry-after:1s}") Duration retryAfter) {
+        this.reactiveSignatureService = reactiveSignatureService;
+        this.retryAfterSeconds = String.valueOf(Math.max(retryAfter.toSeconds(), 1));
+    }
+
+    @PostMapping
+    public Mono<ResponseEntity<String>> signDocument(@RequestBody SignDocumentDto signDocumentDto) {
+        return reactiveSignatureService.signDocument(signDocumentDto)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(errorResponse(e, signDocumentDto.getNif())));
+    }
+
+    @PostMapping(value = "/{nif}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public Mono<ResponseEntity<String>> signDocumentStream(@PathVariable String nif, @RequestBody Flux<DataBuffer> document) {
+        return reactiveSignatureService.signDocument(nif, document)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(errorResponse(e, nif)));
+    }
+
+    @PostMapping("/digest")
+    public Mono<ResponseEntity<String>> signDigest(@RequestBody SignDigestDto signDigestDto) {
+        byte[] digest = DigestSignatureUtil.decodeDigest(signDigestDto.getDigestBase64());
+        if (digest == null) {
+            return Mono.just(ResponseEntity.badRequest().body(SignController.INVALID_DIGEST_MESSAGE));
+        }
+        return reactiveSignatureService.signDigest(signDigestDto.getNif(), digest)
+                .map(ResponseEntity::ok)
+                .onErrorResume(e -> Mono.just(errorResponse(e, signDigestDto.getNif())));
+    }
+
+    private ResponseEntity<String> errorResponse(Throwable e, String nif) {
+        if (e instanceof UnsupportedKeyOperationException) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } else if (e instanceof UserNotFoundException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif " + nif + " not found.");
+        } else if (e instanceof UserKeysNotFoundException) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User keys with nif " + nif + " have not been found");
+        } else if (e instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                    .body(AdmissionControlInterceptor.OVERLOADED_MESSAGE);
+        }
+        return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error when signing the document.");
+    }
+}
@@ -0,0 +1,62 @@
+package com.davidfandino.digital_signature_api.controller;
+
+import com.davidfandino.digital_signature_api.exception.UserKeysAlreadyGeneratedException;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlInterceptor;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.service.ReactiveSignatureService;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Reactive edition of the synchronous key generation of {@link UserKeysController},
+ * served instead of it when the application runs as a reactive web application.
+ * Asynchronous and bulk key generation are only offered by the servlet edition.
+ */
+@RestController
+@RequestMapping("/api/userkeys")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveUserKeysController {
+
+    private final ReactiveSignatureService reactiveSignatureService;
+    private final String retryAfterSeconds;
+
+    public ReactiveUserKeysController(ReactiveSignatureService reactiveSignatureService,
+                                      @Value("${app.admission.retry-after:1s}") Duration retryAfter) {
+        this.reactiveSignatureService = reactiveSignatureService;
+        this.retryAfterSeconds = String.valueOf(Math.max(retryAfter.toSeconds(), 1));
+    }
+
+    @PostMapping("/generate-keys/{nif}")
+    public Mono<ResponseEntity<String>> generateKeys(@PathVariable String nif,
+                                                     @RequestParam(defaultValue = "RSA_2048") KeyAlgorithm algorithm) {
+        return reactiveSignatureService.generateKeys(nif, algorithm)
+                .map(userKeys -> ResponseEntity.ok("Keys generated for user: " + nif))
+                .onErrorResume(e -> Mono.just(errorResponse(e)));
+    }
+
+    private ResponseEntity<String> errorResponse(Throwable e) {
+        if (e instanceof UserNotFoundException) {
+            return ResponseEntity.notFound().build();
+        } else if (e instanceof UserKeysAlreadyGeneratedException) {
+            return new ResponseEntity<>(e.getMessage(), HttpStatus.CONFLICT);
+        } else if (e instanceof RejectedExecutionException) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, retryAfterSeconds)
+                    .body(AdmissionControlInterceptor.OVERLOADED_MESSAGE);
+        }
+        return ResponseEntity.internalServerError().build();
+    }
+}
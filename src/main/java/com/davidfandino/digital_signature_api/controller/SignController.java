@@ -1,26 +1,46 @@
 package com.davidfandino.digital_signature_api.controller;
 
-import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import com.davidfandino.digital_signature_api.dto.SignDigestDto;
+import com.davidfandino.digital_signature_api.dto.SignatureResultDto;
+import com.davidfandino.digital_signature_api.exception.UnsupportedKeyOperationException;
 import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
 import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlled;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.service.BulkSignService;
 import com.davidfandino.digital_signature_api.service.SignService;
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/sign")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SignController {
 
+    public static final String INVALID_DIGEST_MESSAGE = "The digest must be a Base64-encoded SHA-256 hash (32 bytes).";
+
     @Autowired
     private SignService signService;
 
+    @Autowired
+    private BulkSignService bulkSignService;
+
+    @AdmissionControlled(SignatureMetrics.SIGN)
     @PostMapping
-    public ResponseEntity<String> signDocument(@RequestBody SignDocumentDto signDocumentDto) {
+    public ResponseEntity<?> signDocument(@RequestBody DigestedDocumentDto signDocumentDto) {
         try {
             String signatureBase64 = signService.signDocument(signDocumentDto);
-            return ResponseEntity.ok(signatureBase64);
+            return ResponseEntity.ok(new SignatureResultDto(signatureBase64));
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif "
                     + signDocumentDto.getNif() +" not found.");
@@ -32,4 +52,47 @@ public class SignController {
         }
     }
 
+    @AdmissionControlled(value = SignatureMetrics.SIGN, limit = AdmissionControlled.SIGN_STREAM)
+    @PostMapping(value = "/{nif}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> signDocumentStream(@PathVariable String nif, InputStream document) {
+        try {
+            String signatureBase64 = signService.signDocument(nif, document);
+            return ResponseEntity.ok(new SignatureResultDto(signatureBase64));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif " + nif + " not found.");
+        } catch (UserKeysNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User keys with nif " + nif + " have not been found");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error when signing the document.");
+        }
+    }
+
+    @AdmissionControlled(SignatureMetrics.SIGN)
+    @PostMapping("/digest")
+    public ResponseEntity<?> signDigest(@RequestBody SignDigestDto signDigestDto) {
+        byte[] digest = DigestSignatureUtil.decodeDigest(signDigestDto.getDigestBase64());
+        if (digest == null) {
+            return ResponseEntity.badRequest().body(INVALID_DIGEST_MESSAGE);
+        }
+        try {
+            return ResponseEntity.ok(new SignatureResultDto(signService.signDigest(signDigestDto.getNif(), digest)));
+        } catch (UnsupportedKeyOperationException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif "
+                    + signDigestDto.getNif() +" not found.");
+        } catch (UserKeysNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User keys with nif "
+                    + signDigestDto.getNif() + " have not been found");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error when signing the document.");
+        }
+    }
+
+    @PostMapping(value = "/bulk", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public void signDocumentsBulk(InputStream records, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        bulkSignService.signAll(records, response.getOutputStream());
+    }
+
 }
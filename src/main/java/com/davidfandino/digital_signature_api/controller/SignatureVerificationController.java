@@ -1,29 +1,51 @@
 package com.davidfandino.digital_signature_api.controller;
 
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import com.davidfandino.digital_signature_api.dto.VerificationResultDto;
+import com.davidfandino.digital_signature_api.dto.VerifyDigestDto;
 import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
+import com.davidfandino.digital_signature_api.exception.UnsupportedKeyOperationException;
 import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
 import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlled;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
 import com.davidfandino.digital_signature_api.service.SignatureVerificationService;
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.InputStream;
+import java.util.List;
+
 @RestController
 @RequestMapping("/api/signature")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class SignatureVerificationController {
 
+    public static final String SIGNATURE_HEADER = "X-Signature";
+
     @Autowired
     private SignatureVerificationService signatureVerificationService;
 
+    @Value("${app.verify.batch.max-size:50000}")
+    private int maxBatchSize;
+
+    @AdmissionControlled(SignatureMetrics.VERIFY)
     @PostMapping("/verify")
-    public ResponseEntity<?> verifySignature(@RequestBody VerifySignatureDto verifySignatureDto) {
+    public ResponseEntity<?> verifySignature(@RequestBody DigestedDocumentDto verifySignatureDto) {
         try {
             boolean isSignatureValid = signatureVerificationService.verifySignature(verifySignatureDto);
-            return ResponseEntity.ok(isSignatureValid);
+            return ResponseEntity.ok(new VerificationResultDto(isSignatureValid));
         } catch (UserNotFoundException e) {
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif "
                     + verifySignatureDto.getNif() +" not found.");
@@ -34,4 +56,55 @@ public class SignatureVerificationController {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error verifying signature. Error: " +e.getMessage());
         }
     }
-}
\ No newline at end of file
+
+    @AdmissionControlled(value = SignatureMetrics.VERIFY, limit = AdmissionControlled.VERIFY_STREAM)
+    @PostMapping(value = "/verify/{nif}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> verifySignatureStream(@PathVariable String nif,
+                                                   @RequestHeader(SIGNATURE_HEADER) String signatureBase64,
+                                                   InputStream document) {
+        try {
+            boolean isSignatureValid = signatureVerificationService.verifySignature(nif, document, signatureBase64);
+            return ResponseEntity.ok(new VerificationResultDto(isSignatureValid));
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif " + nif + " not found.");
+        } catch (UserKeysNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User keys with nif " + nif + " have not been found");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error verifying signature. Error: " +e.getMessage());
+        }
+    }
+
+    @AdmissionControlled(SignatureMetrics.VERIFY)
+    @PostMapping("/verify/digest")
+    public ResponseEntity<?> verifyDigest(@RequestBody VerifyDigestDto verifyDigestDto) {
+        byte[] digest = DigestSignatureUtil.decodeDigest(verifyDigestDto.getDigestBase64());
+        if (digest == null) {
+            return ResponseEntity.badRequest().body(SignController.INVALID_DIGEST_MESSAGE);
+        }
+        try {
+            boolean isSignatureValid = signatureVerificationService.verifyDigest(verifyDigestDto.getNif(),
+                    digest, verifyDigestDto.getSignatureBase64());
+            return ResponseEntity.ok(new VerificationResultDto(isSignatureValid));
+        } catch (UnsupportedKeyOperationException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User with nif "
+                    + verifyDigestDto.getNif() +" not found.");
+        } catch (UserKeysNotFoundException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body("User keys with nif "
+                    + verifyDigestDto.getNif() + " have not been found");
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).body("Error verifying signature. Error: " +e.getMessage());
+        }
+    }
+
+    @AdmissionControlled(value = SignatureMetrics.VERIFY, limit = AdmissionControlled.VERIFY_BATCH)
+    @PostMapping("/verify/batch")
+    public ResponseEntity<?> verifySignatures(@RequestBody List<VerifySignatureDto> verifySignatureDtos) {
+        if (verifySignatureDtos.size() > maxBatchSize) {
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE)
+                    .body("A verification batch cannot contain more than " + maxBatchSize + " items.");
+        }
+        return ResponseEntity.ok(signatureVerificationService.verifySignatures(verifySignatureDtos));
+    }
+}
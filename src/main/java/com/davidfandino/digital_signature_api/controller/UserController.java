@@ -2,19 +2,29 @@ package com.davidfandino.digital_signature_api.controller;
 
 import com.davidfandino.digital_signature_api.dto.UserDto;
 import com.davidfandino.digital_signature_api.exception.UserAlreadyExistsException;
+import com.davidfandino.digital_signature_api.service.UserImportService;
 import com.davidfandino.digital_signature_api.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.io.InputStream;
+
 @RestController
 @RequestMapping("/api/user")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserController {
 
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserImportService userImportService;
+
     @PostMapping("/create")
     public ResponseEntity<?> create(@RequestBody UserDto userDto) {
         try {
@@ -25,4 +35,18 @@ public class UserController {
         }
     }
 
+    @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> importNdjson(InputStream users) throws IOException {
+        return ResponseEntity.ok(userImportService.importNdjson(users));
+    }
+
+    @PostMapping(value = "/import", consumes = "text/csv")
+    public ResponseEntity<?> importCsv(InputStream users) throws IOException {
+        try {
+            return ResponseEntity.ok(userImportService.importCsv(users));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+    }
+
 }
@@ -1,29 +1,58 @@
 package com.davidfandino.digital_signature_api.controller;
 
+import com.davidfandino.digital_signature_api.dto.BulkKeyProvisioningJobDto;
+import com.davidfandino.digital_signature_api.dto.KeyGenerationJobDto;
+import com.davidfandino.digital_signature_api.dto.KeyPairPoolStatsDto;
 import com.davidfandino.digital_signature_api.exception.UserKeysAlreadyGeneratedException;
 import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlled;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.pool.KeyPairPool;
+import com.davidfandino.digital_signature_api.service.BulkKeyProvisioningService;
+import com.davidfandino.digital_signature_api.service.KeyGenerationJobService;
 import com.davidfandino.digital_signature_api.service.UserKeysService;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.net.URI;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.RejectedExecutionException;
+
 @RestController
 @RequestMapping("/api/userkeys")
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
 public class UserKeysController {
 
     private final UserKeysService userKeysService;
+    private final KeyPairPool keyPairPool;
+    private final KeyGenerationJobService keyGenerationJobService;
+    private final BulkKeyProvisioningService bulkKeyProvisioningService;
 
-    public UserKeysController(UserKeysService userKeysService) {
+    public UserKeysController(UserKeysService userKeysService, KeyPairPool keyPairPool,
+                              KeyGenerationJobService keyGenerationJobService,
+                              BulkKeyProvisioningService bulkKeyProvisioningService) {
         this.userKeysService = userKeysService;
+        this.keyPairPool = keyPairPool;
+        this.keyGenerationJobService = keyGenerationJobService;
+        this.bulkKeyProvisioningService = bulkKeyProvisioningService;
     }
 
+    @AdmissionControlled(SignatureMetrics.KEYGEN)
     @PostMapping("/generate-keys/{nif}")
-    public ResponseEntity<String> generateKeys(@PathVariable String nif) {
+    public ResponseEntity<String> generateKeys(@PathVariable String nif,
+                                               @RequestParam(defaultValue = "RSA_2048") KeyAlgorithm algorithm) {
         try {
-            userKeysService.generateKeys(nif);
+            userKeysService.generateKeys(nif, algorithm);
             return ResponseEntity.ok("Keys generated for user: " + nif);
         }   catch (UserNotFoundException e) {
             return ResponseEntity.notFound().build();
@@ -34,4 +63,51 @@ public class UserKeysController {
         }
     }
 
+    @PostMapping("/generate-keys/{nif}/async")
+    public ResponseEntity<KeyGenerationJobDto> generateKeysAsync(@PathVariable String nif,
+                                                                 @RequestParam(defaultValue = "RSA_2048") KeyAlgorithm algorithm) {
+        try {
+            KeyGenerationJobDto job = keyGenerationJobService.submit(nif, algorithm);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/userkeys/jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (UserNotFoundException e) {
+            return ResponseEntity.notFound().build();
+        } catch (UserKeysAlreadyGeneratedException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().build();
+        }
+    }
+
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<KeyGenerationJobDto> keyGenerationJob(@PathVariable UUID jobId) {
+        return ResponseEntity.of(keyGenerationJobService.getJob(jobId));
+    }
+
+    @PostMapping("/generate-keys/bulk")
+    public ResponseEntity<BulkKeyProvisioningJobDto> generateKeysBulk(@RequestBody(required = false) List<String> nifs,
+                                                                      @RequestParam(defaultValue = "RSA_2048") KeyAlgorithm algorithm) {
+        try {
+            BulkKeyProvisioningJobDto job = bulkKeyProvisioningService.submit(nifs, algorithm);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/userkeys/bulk-jobs/" + job.getJobId()))
+                    .body(job);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+
+    @GetMapping("/bulk-jobs/{jobId}")
+    public ResponseEntity<BulkKeyProvisioningJobDto> bulkKeyProvisioningJob(@PathVariable UUID jobId) {
+        return ResponseEntity.of(bulkKeyProvisioningService.getJob(jobId));
+    }
+
+    @GetMapping("/pool/stats")
+    public ResponseEntity<KeyPairPoolStatsDto> keyPairPoolStats() {
+        return ResponseEntity.ok(keyPairPool.stats());
+    }
+
 }
@@ -0,0 +1,195 @@
+package com.davidfandino.digital_signature_api.crypto;
+
+import com.davidfandino.digital_signature_api.exception.DecryptKeyErrorException;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
+import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.AEADBadTagException;
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.SecretKey;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Holds the key-encryption key, derived once, and pools of reusable {@link Cipher},
+ * {@link Signature} and {@link KeyFactory} instances, so the hot paths do not
+ * look up a provider and allocate an engine on every call. Instances are pooled
+ * rather than thread-local so they are also shared between virtual threads.
+ * <p>
+ * Private keys are encrypted as a versioned envelope: a format byte, a random
+ * 96-bit nonce and the AES-256-GCM ciphertext with its tag. The owner's user
+ * UUID is authenticated as additional data, so an envelope copied into another
+ * user's row fails to decrypt. Keys written before
+ * the envelope (AES/ECB with the raw secret) carry no format byte and are still
+ * decrypted.
+ */
+@Component
+public class CryptoEngine {
+
+    public static final byte ENVELOPE_AES_GCM = 1;
+
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    private static final String KEK_DERIVATION_ALGORITHM = "HmacSHA256";
+    private static final byte[] KEK_LABEL = "digital-signature-api/user-keys/aes-gcm/v1".getBytes(StandardCharsets.UTF_8);
+    private static final int NONCE_LENGTH = 12;
+    private static final int TAG_LENGTH = 16;
+    private static final int ENVELOPE_OVERHEAD = 1 + NONCE_LENGTH + TAG_LENGTH;
+
+    private final SecretKey keyEncryptionKey;
+    private final SecretKey legacyKey;
+    private final SecureRandom secureRandom = new SecureRandom();
+    private final InstancePool<Cipher> ciphers;
+    private final InstancePool<Cipher> legacyCiphers;
+    private final Map<KeyAlgorithm, InstancePool<Signature>> signatures = new EnumMap<>(KeyAlgorithm.class);
+    private final Map<KeyAlgorithm, InstancePool<Signature>> digestSignatures = new EnumMap<>(KeyAlgorithm.class);
+    private final Map<KeyAlgorithm, InstancePool<KeyFactory>> keyFactories = new EnumMap<>(KeyAlgorithm.class);
+
+    public CryptoEngine(@Value("${app.secret-key}") String secretKey,
+                        @Value("${app.crypto.pool.max-idle:0}") int maxIdle) {
+        int poolSize = maxIdle > 0 ? maxIdle : 2 * Runtime.getRuntime().availableProcessors();
+        this.keyEncryptionKey = deriveKeyEncryptionKey(secretKey.getBytes());
+        this.legacyKey = new SecretKeySpec(secretKey.getBytes(), EncryptionUtil.ALGORITHM);
+        this.ciphers = new InstancePool<>(() -> Cipher.getInstance(GCM_TRANSFORMATION), poolSize);
+        this.legacyCiphers = new InstancePool<>(() -> Cipher.getInstance(EncryptionUtil.ALGORITHM), poolSize);
+        for (KeyAlgorithm keyAlgorithm : KeyAlgorithm.values()) {
+            signatures.put(keyAlgorithm, new InstancePool<>(keyAlgorithm::newSignature, poolSize));
+            keyFactories.put(keyAlgorithm, new InstancePool<>(keyAlgorithm::newKeyFactory, poolSize));
+            if (keyAlgorithm.isDigestSigningSupported()) {
+                String algorithm = DigestSignatureUtil.digestSignatureAlgorithm(keyAlgorithm);
+                digestSignatures.put(keyAlgorithm, new InstancePool<>(() -> Signature.getInstance(algorithm), poolSize));
+            }
+        }
+    }
+
+    @FunctionalInterface
+    public interface Operation<I, T, E extends Exception> {
+        T apply(I instance) throws E;
+    }
+
+    /**
+     * Encrypts key material into an AES-GCM envelope under the key-encryption key,
+     * bound to the user that owns it.
+     */
+    public byte[] encrypt(byte[] data, UUID owner) throws GeneralSecurityException {
+        byte[] envelope = new byte[ENVELOPE_OVERHEAD + data.length];
+        envelope[0] = ENVELOPE_AES_GCM;
+        byte[] nonce = new byte[NONCE_LENGTH];
+        secureRandom.nextBytes(nonce);
+        System.arraycopy(nonce, 0, envelope, 1, NONCE_LENGTH);
+        return with(ciphers, cipher -> {
+            cipher.init(Cipher.ENCRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(associatedData(owner));
+            cipher.doFinal(data, 0, data.length, envelope, 1 + NONCE_LENGTH);
+            return envelope;
+        });
+    }
+
+    /**
+     * Decrypts an AES-GCM envelope of the given owner, or key material in the
+     * legacy AES/ECB format. A legacy ciphertext whose first byte happens to match
+     * the format byte fails the GCM tag check and is then decrypted as legacy.
+     */
+    public byte[] decrypt(byte[] encryptedData, UUID owner) throws DecryptKeyErrorException {
+        try {
+            if (encryptedData.length >= ENVELOPE_OVERHEAD && encryptedData[0] == ENVELOPE_AES_GCM) {
+                try {
+                    return decryptEnvelope(encryptedData, owner);
+                } catch (AEADBadTagException e) {
+                    if (encryptedData.length % 16 != 0) {
+                        throw e;
+                    }
+                }
+            }
+            return with(legacyCiphers, cipher -> {
+                cipher.init(Cipher.DECRYPT_MODE, legacyKey);
+                return cipher.doFinal(encryptedData);
+            });
+        } catch (GeneralSecurityException e) {
+            throw new DecryptKeyErrorException("Error to decrypt key.");
+        }
+    }
+
+    private byte[] decryptEnvelope(byte[] envelope, UUID owner) throws GeneralSecurityException {
+        return with(ciphers, cipher -> {
+            cipher.init(Cipher.DECRYPT_MODE, keyEncryptionKey, new GCMParameterSpec(TAG_LENGTH * 8, envelope, 1, NONCE_LENGTH));
+            cipher.updateAAD(associatedData(owner));
+            return cipher.doFinal(envelope, 1 + NONCE_LENGTH, envelope.length - 1 - NONCE_LENGTH);
+        });
+    }
+
+    private static byte[] associatedData(UUID owner) {
+        return ByteBuffer.allocate(16)
+                .putLong(owner.getMostSignificantBits())
+                .putLong(owner.getLeastSignificantBits())
+                .array();
+    }
+
+    /**
+     * Derives the 256-bit key-encryption key from the configured secret, so the
+     * GCM key is never the raw secret used by the legacy format.
+     */
+    private static SecretKey deriveKeyEncryptionKey(byte[] secret) {
+        try {
+            Mac mac = Mac.getInstance(KEK_DERIVATION_ALGORITHM);
+            mac.init(new SecretKeySpec(secret, KEK_DERIVATION_ALGORITHM));
+            return new SecretKeySpec(mac.doFinal(KEK_LABEL), "AES");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Could not derive the key-encryption key", e);
+        }
+    }
+
+    public PrivateKey parsePrivateKey(byte[] pkcs8, KeyAlgorithm keyAlgorithm) throws GeneralSecurityException {
+        return with(keyFactories.get(keyAlgorithm), keyFactory -> keyFactory.generatePrivate(new PKCS8EncodedKeySpec(pkcs8)));
+    }
+
+    public PublicKey parsePublicKey(byte[] x509, KeyAlgorithm keyAlgorithm) throws GeneralSecurityException {
+        return with(keyFactories.get(keyAlgorithm), keyFactory -> keyFactory.generatePublic(new X509EncodedKeySpec(x509)));
+    }
+
+    /**
+     * Runs the operation with a signature engine for the key's algorithm, which
+     * the operation must initialise before use.
+     */
+    public <T, E extends Exception> T withSignature(Key key, Operation<Signature, T, E> operation) throws E {
+        return with(signatures.get(KeyAlgorithm.fromKey(key)), operation);
+    }
+
+    public byte[] signDigest(byte[] digest, PrivateKey privateKey) throws GeneralSecurityException {
+        return with(digestSignatures(privateKey), signature -> DigestSignatureUtil.sign(signature, digest, privateKey));
+    }
+
+    public boolean verifyDigest(byte[] digest, byte[] signatureBytes, PublicKey publicKey) throws GeneralSecurityException {
+        return with(digestSignatures(publicKey),
+                signature -> DigestSignatureUtil.verify(signature, digest, signatureBytes, publicKey));
+    }
+
+    private InstancePool<Signature> digestSignatures(Key key) {
+        KeyAlgorithm keyAlgorithm = KeyAlgorithm.fromKey(key);
+        InstancePool<Signature> pool = digestSignatures.get(keyAlgorithm);
+        if (pool == null) {
+            throw DigestSignatureUtil.unsupportedDigestSigning();
+        }
+        return pool;
+    }
+
+    private static <I, T, E extends Exception> T with(InstancePool<I> pool, Operation<I, T, E> operation) throws E {
+        I instance = pool.borrow();
+        try {
+            return operation.apply(instance);
+        } finally {
+            pool.release(instance);
+        }
+    }
+}
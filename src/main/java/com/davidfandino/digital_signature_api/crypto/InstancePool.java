@@ -0,0 +1,41 @@
+package com.davidfandino.digital_signature_api.crypto;
+
+import java.security.GeneralSecurityException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Idle JCA engine instances ready to be reinitialised. Borrowing creates a new
+ * instance when none is idle; releasing drops it when the pool is full.
+ */
+final class InstancePool<T> {
+
+    @FunctionalInterface
+    interface Factory<T> {
+        T create() throws GeneralSecurityException;
+    }
+
+    private final Factory<T> factory;
+    private final BlockingQueue<T> idle;
+
+    InstancePool(Factory<T> factory, int maxIdle) {
+        this.factory = factory;
+        this.idle = new ArrayBlockingQueue<>(Math.max(maxIdle, 1));
+    }
+
+    T borrow() {
+        T instance = idle.poll();
+        if (instance != null) {
+            return instance;
+        }
+        try {
+            return factory.create();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Crypto engine unavailable", e);
+        }
+    }
+
+    void release(T instance) {
+        idle.offer(instance);
+    }
+}
@@ -0,0 +1,16 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public @Data class BatchVerifyResultDto {
+    private int index;
+    private String nif;
+    private Boolean valid;
+    private String error;
+}
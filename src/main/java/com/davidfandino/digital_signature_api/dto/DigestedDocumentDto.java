@@ -0,0 +1,35 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import com.davidfandino.digital_signature_api.utils.SpooledDocument;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+/**
+ * Sign/verify request whose document was hashed with SHA-256 while the body was
+ * being read, so the document itself is not held in memory. The decoded document
+ * is only kept, in {@link #document}, for keys that cannot sign a digest.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class DigestedDocumentDto implements AutoCloseable {
+    private String nif;
+    private byte[] documentDigest;
+    private String signatureBase64;
+    private SpooledDocument document;
+    private long documentSize;
+
+    @Override
+    public void close() {
+        if (document != null) {
+            try {
+                document.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.KeyGenerationJobStatus;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+@AllArgsConstructor
+@NoArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public @Data class KeyGenerationJobDto {
+    private UUID jobId;
+    private String nif;
+    private KeyAlgorithm algorithm;
+    private KeyGenerationJobStatus status;
+    private String error;
+    private LocalDateTime creationDate;
+    private LocalDateTime completionDate;
+}
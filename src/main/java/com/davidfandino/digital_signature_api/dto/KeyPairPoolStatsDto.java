@@ -0,0 +1,19 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class KeyPairPoolStatsDto {
+    private int depth;
+    private int capacity;
+    private int lowWaterMark;
+    private int workers;
+    private int inFlight;
+    private long generatedCount;
+    private long hitCount;
+    private long missCount;
+    private double refillRatePerSecond;
+}
@@ -0,0 +1,12 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class SignDigestDto {
+    private String digestBase64;
+    private String nif;
+}
@@ -0,0 +1,15 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Signature returned by the sign endpoints: as Base64 text by default, or as raw
+ * bytes in CBOR and Protobuf.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class SignatureResultDto {
+    private String signatureBase64;
+}
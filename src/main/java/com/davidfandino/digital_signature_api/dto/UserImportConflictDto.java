@@ -0,0 +1,13 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class UserImportConflictDto {
+    private long index;
+    private String nif;
+    private String error;
+}
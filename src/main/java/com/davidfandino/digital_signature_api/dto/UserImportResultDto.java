@@ -0,0 +1,15 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class UserImportResultDto {
+    private long imported;
+    private long rejected;
+    private List<UserImportConflictDto> conflicts;
+}
@@ -0,0 +1,15 @@
+package com.davidfandino.digital_signature_api.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Outcome returned by the verify endpoints: a bare JSON boolean by default, or
+ * a message with a {@code valid} field in CBOR and Protobuf.
+ */
+@AllArgsConstructor
+@NoArgsConstructor
+public @Data class VerificationResultDto {
+    private boolean valid;
+}
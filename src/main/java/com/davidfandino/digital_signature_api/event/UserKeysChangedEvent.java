@@ -0,0 +1,9 @@
+package com.davidfandino.digital_signature_api.event;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+
+@AllArgsConstructor
+public @Data class UserKeysChangedEvent {
+    private String nif;
+}
@@ -0,0 +1,31 @@
+package com.davidfandino.digital_signature_api.event;
+
+import com.davidfandino.digital_signature_api.model.UserKeys;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes a {@link UserKeysChangedEvent} whenever a {@link UserKeys} row is
+ * written or removed, so in-memory key caches never serve stale material.
+ */
+@Component
+public class UserKeysEntityListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public UserKeysEntityListener(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @PostPersist
+    @PostUpdate
+    @PostRemove
+    public void onChange(UserKeys userKeys) {
+        if (userKeys.getUser() != null) {
+            eventPublisher.publishEvent(new UserKeysChangedEvent(userKeys.getUser().getNif()));
+        }
+    }
+}
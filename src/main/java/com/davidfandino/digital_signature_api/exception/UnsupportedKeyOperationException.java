@@ -0,0 +1,8 @@
+package com.davidfandino.digital_signature_api.exception;
+
+public class UnsupportedKeyOperationException extends RuntimeException {
+
+    public UnsupportedKeyOperationException(String message) {
+        super(message);
+    }
+}
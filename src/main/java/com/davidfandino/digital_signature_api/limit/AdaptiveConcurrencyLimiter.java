@@ -0,0 +1,95 @@
+package com.davidfandino.digital_signature_api.limit;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Concurrency limit adjusted from request latency, after the gradient algorithm
+ * of Netflix's concurrency-limits. A short and a long moving average of the
+ * latency are kept; while the short one stays within {@code tolerance} times the
+ * long one the limit grows by its square root, and as queues build up and the
+ * short average rises the limit is cut in proportion, down to half per sample.
+ * The limit only grows while at least half of it is in use.
+ * <p>
+ * The averages are updated under a ReentrantLock rather than a monitor, which
+ * would pin the carrier of a virtual thread that waits for it.
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final double SHORT_WINDOW_WEIGHT = 2.0 / (10 + 1);
+    private static final double LONG_WINDOW_WEIGHT = 2.0 / (600 + 1);
+    private static final double SMOOTHING = 0.2;
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final ReentrantLock updateLock = new ReentrantLock();
+
+    private volatile double limit;
+    private double shortLatency;
+    private double longLatency;
+
+    public AdaptiveConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, double tolerance) {
+        this.minLimit = Math.max(minLimit, 1);
+        this.maxLimit = Math.max(maxLimit, this.minLimit);
+        this.tolerance = tolerance;
+        this.limit = Math.min(Math.max(initialLimit, this.minLimit), this.maxLimit);
+    }
+
+    /**
+     * Takes a slot if fewer requests than the limit are in flight. Every acquired
+     * slot must be released.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= (int) limit) {
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release(long latencyNanos) {
+        int inFlightAtCompletion = inFlight.getAndDecrement();
+        updateLock.lock();
+        try {
+            update(latencyNanos, inFlightAtCompletion);
+        } finally {
+            updateLock.unlock();
+        }
+    }
+
+    private void update(long latencyNanos, int inFlightAtCompletion) {
+        if (longLatency == 0) {
+            shortLatency = latencyNanos;
+            longLatency = latencyNanos;
+            return;
+        }
+        shortLatency += (latencyNanos - shortLatency) * SHORT_WINDOW_WEIGHT;
+        longLatency += (latencyNanos - longLatency) * LONG_WINDOW_WEIGHT;
+        if (longLatency / shortLatency > 2) {
+            // Load dropped well below the long-term level: let the baseline catch up
+            longLatency *= 0.95;
+        }
+
+        double gradient = Math.max(0.5, Math.min(1.0, tolerance * longLatency / shortLatency));
+        double newLimit = limit * gradient + Math.sqrt(limit);
+        if (newLimit > limit && inFlightAtCompletion < limit / 2) {
+            return;
+        }
+        newLimit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+        limit = Math.max(minLimit, Math.min(maxLimit, newLimit));
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+}
@@ -0,0 +1,101 @@
+package com.davidfandino.digital_signature_api.limit;
+
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Admits requests to {@link AdmissionControlled} handlers through an adaptive
+ * concurrency limit per operation, before the request body is read. Requests
+ * over the limit get an immediate 503 with a Retry-After header instead of
+ * queueing behind work the server cannot finish in time.
+ * <p>
+ * The latency fed to the limit runs until the request completes, less the time
+ * spent reading the body as tracked by {@link RequestBodyTimingFilter}, so that
+ * slow uploads do not read as server overload.
+ */
+@Component
+public class AdmissionControlInterceptor implements HandlerInterceptor {
+
+    public static final String OVERLOADED_MESSAGE = "The server is overloaded, retry later.";
+
+    private static final String ADMISSION_ATTRIBUTE = AdmissionControlInterceptor.class.getName() + ".admission";
+
+    private final SignatureMetrics signatureMetrics;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double tolerance;
+    private final String retryAfterSeconds;
+
+    public AdmissionControlInterceptor(SignatureMetrics signatureMetrics,
+                                       @Value("${app.admission.initial-limit:0}") int initialLimit,
+                                       @Value("${app.admission.min-limit:0}") int minLimit,
+                                       @Value("${app.admission.max-limit:1000}") int maxLimit,
+                                       @Value("${app.admission.tolerance:2.0}") double tolerance,
+                                       @Value("${app.admission.retry-after:1s}") Duration retryAfter) {
+        int cores = Runtime.getRuntime().availableProcessors();
+        this.signatureMetrics = signatureMetrics;
+        this.initialLimit = initialLimit > 0 ? initialLimit : 4 * cores;
+        this.minLimit = minLimit > 0 ? minLimit : cores;
+        this.maxLimit = maxLimit;
+        this.tolerance = tolerance;
+        this.retryAfterSeconds = String.valueOf(Math.max(retryAfter.toSeconds(), 1));
+    }
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        AdmissionControlled admissionControlled = handlerMethod.getMethodAnnotation(AdmissionControlled.class);
+        if (admissionControlled == null) {
+            return true;
+        }
+        AdaptiveConcurrencyLimiter limiter = limiter(admissionControlled.value(), admissionControlled.limit());
+        if (!limiter.tryAcquire()) {
+            signatureMetrics.recordRejected(admissionControlled.value());
+            response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, retryAfterSeconds);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write(OVERLOADED_MESSAGE);
+            return false;
+        }
+        request.setAttribute(ADMISSION_ATTRIBUTE, new Admission(limiter, System.nanoTime(),
+                RequestBodyTimingFilter.bodyReadNanos(request)));
+        return true;
+    }
+
+    @Override
+    public void afterCompletion(HttpServletRequest request, HttpServletResponse response, Object handler, Exception ex) {
+        if (request.getAttribute(ADMISSION_ATTRIBUTE) instanceof Admission admission) {
+            request.removeAttribute(ADMISSION_ATTRIBUTE);
+            long bodyReadNanos = RequestBodyTimingFilter.bodyReadNanos(request) - admission.startBodyReadNanos();
+            admission.limiter().release(Math.max(System.nanoTime() - admission.startNanos() - bodyReadNanos, 0));
+        }
+    }
+
+    AdaptiveConcurrencyLimiter limiter(String operation, String limit) {
+        return limiters.computeIfAbsent(limit.isEmpty() ? operation : limit, name -> {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(initialLimit, minLimit, maxLimit, tolerance);
+            signatureMetrics.registerConcurrencyLimit(operation, name, limiter::getLimit, limiter::getInFlight);
+            return limiter;
+        });
+    }
+
+    private record Admission(AdaptiveConcurrencyLimiter limiter, long startNanos, long startBodyReadNanos) {
+    }
+}
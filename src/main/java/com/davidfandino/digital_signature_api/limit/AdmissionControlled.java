@@ -0,0 +1,31 @@
+package com.davidfandino.digital_signature_api.limit;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a handler method as CPU-bound work admitted through the adaptive
+ * concurrency limit of the given operation.
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AdmissionControlled {
+
+    String SIGN_STREAM = "sign_stream";
+    String VERIFY_STREAM = "verify_stream";
+    String VERIFY_BATCH = "verify_batch";
+
+    /**
+     * The operation whose limit applies, one of the {@code SignatureMetrics} operations.
+     */
+    String value();
+
+    /**
+     * The limit the handler is admitted through, by default the operation's own.
+     * Handlers whose cost grows with the request, such as uploads and batches,
+     * get a separate limit so that their latency does not shed single requests.
+     */
+    String limit() default "";
+}
@@ -0,0 +1,124 @@
+package com.davidfandino.digital_signature_api.limit;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.ServletRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpMethod;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.util.WebUtils;
+
+import java.io.IOException;
+
+/**
+ * Accumulates the time POST requests spend blocked reading their body, so that
+ * {@link AdmissionControlInterceptor} can leave client upload speed out of the
+ * latency that drives the concurrency limits.
+ */
+@Component
+public class RequestBodyTimingFilter extends OncePerRequestFilter {
+
+    private final boolean enabled;
+
+    public RequestBodyTimingFilter(@Value("${app.admission.enabled:true}") boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * The nanoseconds spent so far reading the body of the request, or 0 when it
+     * was not timed.
+     */
+    public static long bodyReadNanos(ServletRequest request) {
+        TimedRequest timedRequest = WebUtils.getNativeRequest(request, TimedRequest.class);
+        return timedRequest != null ? timedRequest.readNanos : 0;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !HttpMethod.POST.matches(request.getMethod());
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        filterChain.doFilter(new TimedRequest(request), response);
+    }
+
+    private static final class TimedRequest extends HttpServletRequestWrapper {
+
+        private long readNanos;
+        private ServletInputStream inputStream;
+
+        TimedRequest(HttpServletRequest request) {
+            super(request);
+        }
+
+        @Override
+        public ServletInputStream getInputStream() throws IOException {
+            if (inputStream == null) {
+                inputStream = new TimedInputStream(super.getInputStream());
+            }
+            return inputStream;
+        }
+
+        private final class TimedInputStream extends ServletInputStream {
+
+            private final ServletInputStream delegate;
+
+            TimedInputStream(ServletInputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public int read() throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return delegate.read();
+                } finally {
+                    readNanos += System.nanoTime() - start;
+                }
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                long start = System.nanoTime();
+                try {
+                    return delegate.read(b, off, len);
+                } finally {
+                    readNanos += System.nanoTime() - start;
+                }
+            }
+
+            @Override
+            public int available() throws IOException {
+                return delegate.available();
+            }
+
+            @Override
+            public void close() throws IOException {
+                delegate.close();
+            }
+
+            @Override
+            public boolean isFinished() {
+                return delegate.isFinished();
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setReadListener(ReadListener readListener) {
+                delegate.setReadListener(readListener);
+            }
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.davidfandino.digital_signature_api.metrics;
+
+import com.davidfandino.digital_signature_api.exception.*;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Supplier;
+
+/**
+ * Per-stage timers, document size summaries and outcome counters for the sign,
+ * verify and keygen operations. Percentiles and histograms are configured with
+ * the management.metrics.distribution.* properties.
+ */
+@Component
+public class SignatureMetrics {
+
+    public static final String SIGN = "sign";
+    public static final String VERIFY = "verify";
+    public static final String KEYGEN = "keygen";
+
+    public static final String STAGE_TIMER = "signature.stage";
+    public static final String DOCUMENT_SIZE_SUMMARY = "signature.document.size";
+    public static final String OUTCOME_COUNTER = "signature.outcome";
+    public static final String COALESCED_COUNTER = "signature.coalesced";
+    public static final String CONCURRENCY_LIMIT_GAUGE = "signature.concurrency.limit";
+    public static final String IN_FLIGHT_GAUGE = "signature.concurrency.in_flight";
+
+    public static final String STAGE_TOTAL = "total";
+    public static final String STAGE_KEY_RESOLUTION = "key_resolution";
+    public static final String STAGE_USER_LOOKUP = "user_lookup";
+    public static final String STAGE_KEYS_LOOKUP = "keys_lookup";
+    public static final String STAGE_DECRYPT = "decrypt";
+    public static final String STAGE_PARSE = "parse";
+    public static final String STAGE_CRYPTO = "crypto";
+    public static final String STAGE_GENERATE = "generate";
+    public static final String STAGE_ENCRYPT = "encrypt";
+    public static final String STAGE_PERSIST = "persist";
+
+    private final MeterRegistry meterRegistry;
+
+    public SignatureMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @FunctionalInterface
+    public interface Stage<T, E extends Exception> {
+        T call() throws E;
+    }
+
+    /**
+     * Times a whole operation as its "total" stage and counts its outcome, derived
+     * from the result (valid/invalid for verifications) or from the exception.
+     */
+    public <T, E extends Exception> T measure(String operation, Stage<T, E> stage) throws E {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        String outcome = "error";
+        try {
+            T result = stage.call();
+            outcome = outcomeOf(result);
+            return result;
+        } catch (Exception e) {
+            outcome = outcomeOf(e);
+            throw e;
+        } finally {
+            sample.stop(stageTimer(operation, STAGE_TOTAL));
+            meterRegistry.counter(OUTCOME_COUNTER, "operation", operation, "outcome", outcome).increment();
+        }
+    }
+
+    public <T, E extends Exception> T time(String operation, String stageName, Stage<T, E> stage) throws E {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            return stage.call();
+        } finally {
+            sample.stop(stageTimer(operation, stageName));
+        }
+    }
+
+    public void recordDocumentSize(String operation, long bytes) {
+        DistributionSummary.builder(DOCUMENT_SIZE_SUMMARY)
+                .baseUnit("bytes")
+                .tag("operation", operation)
+                .register(meterRegistry)
+                .record(bytes);
+    }
+
+    /**
+     * Counts a request served by the result of an identical request in flight.
+     */
+    public void recordCoalesced(String operation) {
+        meterRegistry.counter(COALESCED_COUNTER, "operation", operation).increment();
+    }
+
+    /**
+     * Counts a request shed by admission control as the "rejected" outcome.
+     */
+    public void recordRejected(String operation) {
+        meterRegistry.counter(OUTCOME_COUNTER, "operation", operation, "outcome", "rejected").increment();
+    }
+
+    public void registerConcurrencyLimit(String operation, String limitName, Supplier<Number> limit,
+                                         Supplier<Number> inFlight) {
+        Gauge.builder(CONCURRENCY_LIMIT_GAUGE, limit).tag("operation", operation).tag("limit", limitName)
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT_GAUGE, inFlight).tag("operation", operation).tag("limit", limitName)
+                .register(meterRegistry);
+    }
+
+    private Timer stageTimer(String operation, String stageName) {
+        return meterRegistry.timer(STAGE_TIMER, "operation", operation, "stage", stageName);
+    }
+
+    private static String outcomeOf(Object result) {
+        if (result instanceof Boolean valid) {
+            return valid ? "valid" : "invalid";
+        }
+        return "success";
+    }
+
+    private static String outcomeOf(Exception e) {
+        if (e instanceof UserNotFoundException) {
+            return "user_not_found";
+        } else if (e instanceof UserKeysNotFoundException) {
+            return "keys_not_found";
+        } else if (e instanceof UserKeysAlreadyGeneratedException) {
+            return "keys_already_generated";
+        } else if (e instanceof DecryptKeyErrorException) {
+            return "decrypt_error";
+        } else if (e instanceof UnsupportedKeyOperationException) {
+            return "unsupported";
+        }
+        return "error";
+    }
+}
@@ -0,0 +1,82 @@
+package com.davidfandino.digital_signature_api.model;
+
+import java.security.*;
+import java.security.spec.ECGenParameterSpec;
+
+public enum KeyAlgorithm {
+
+    RSA_2048("RSA", "SHA256withRSA", true, true),
+    EC_P256("EC", "SHA256withECDSA", true, false),
+    ED25519("Ed25519", "Ed25519", false, true);
+
+    private final String keyFactoryAlgorithm;
+    private final String signatureAlgorithm;
+    private final boolean digestSigningSupported;
+    private final boolean deterministicSignature;
+
+    KeyAlgorithm(String keyFactoryAlgorithm, String signatureAlgorithm, boolean digestSigningSupported,
+                 boolean deterministicSignature) {
+        this.keyFactoryAlgorithm = keyFactoryAlgorithm;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.digestSigningSupported = digestSigningSupported;
+        this.deterministicSignature = deterministicSignature;
+    }
+
+    public String getKeyFactoryAlgorithm() {
+        return keyFactoryAlgorithm;
+    }
+
+    public String getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Whether a signature can be produced from a SHA-256 digest alone. Ed25519
+     * (PureEdDSA) hashes the full message internally, so it needs the document.
+     */
+    public boolean isDigestSigningSupported() {
+        return digestSigningSupported;
+    }
+
+    /**
+     * Whether signing the same document with the same key always gives the same
+     * signature: true for PKCS#1 v1.5 and EdDSA, false for ECDSA's random nonce.
+     */
+    public boolean isDeterministicSignature() {
+        return deterministicSignature;
+    }
+
+    public KeyFactory newKeyFactory() throws NoSuchAlgorithmException {
+        return KeyFactory.getInstance(keyFactoryAlgorithm);
+    }
+
+    public Signature newSignature() throws NoSuchAlgorithmException {
+        return Signature.getInstance(signatureAlgorithm);
+    }
+
+    public KeyPair generateKeyPair() throws GeneralSecurityException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(keyFactoryAlgorithm);
+        switch (this) {
+            case RSA_2048 -> keyPairGenerator.initialize(2048);
+            case EC_P256 -> keyPairGenerator.initialize(new ECGenParameterSpec("secp256r1"));
+            case ED25519 -> { }
+        }
+        return keyPairGenerator.generateKeyPair();
+    }
+
+    /**
+     * Rows created before the algorithm was stored hold RSA-2048 keys.
+     */
+    public static KeyAlgorithm orDefault(KeyAlgorithm keyAlgorithm) {
+        return keyAlgorithm == null ? RSA_2048 : keyAlgorithm;
+    }
+
+    public static KeyAlgorithm fromKey(Key key) {
+        return switch (key.getAlgorithm()) {
+            case "RSA" -> RSA_2048;
+            case "EC" -> EC_P256;
+            case "EdDSA", "Ed25519" -> ED25519;
+            default -> throw new IllegalArgumentException("Unsupported key algorithm: " + key.getAlgorithm());
+        };
+    }
+}
@@ -0,0 +1,8 @@
+package com.davidfandino.digital_signature_api.model;
+
+public enum KeyGenerationJobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
@@ -30,7 +30,4 @@ public @Data class User {
     private String nif;
     private LocalDateTime creationDate;
 
-    @OneToOne(mappedBy = "user", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
-    private UserKeys userKeys;
-
 }
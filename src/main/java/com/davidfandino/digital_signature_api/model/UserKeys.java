@@ -1,27 +1,74 @@
 package com.davidfandino.digital_signature_api.model;
+import com.davidfandino.digital_signature_api.event.UserKeysEntityListener;
 import jakarta.persistence.*;
-import lombok.AllArgsConstructor;
-import lombok.Data;
-import lombok.NoArgsConstructor;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
 
 import java.util.UUID;
 
 @Entity
-@AllArgsConstructor
+@EntityListeners(UserKeysEntityListener.class)
 @NoArgsConstructor
-public @Data class UserKeys {
+public @Data class UserKeys implements Persistable<UUID> {
 
+    /**
+     * Shared with the user's primary key, so a user's keys are found by the same index.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
     private UUID userKeyUUID;
 
-    @Lob
-    private String publicKey;
+    /**
+     * X.509 encoding of the public key.
+     */
+    @Column(name = "public_key_der", length = 1024)
+    private byte[] publicKey;
 
-    @Lob
-    private String privateKey;
+    /**
+     * PKCS#8 encoding of the private key, encrypted with the master key.
+     */
+    @Column(name = "encrypted_private_key", length = 4096)
+    private byte[] privateKey;
 
-    @OneToOne
-    @JoinColumn(name = "user_uuid", nullable = false)
+    @MapsId
+    @OneToOne(fetch = FetchType.LAZY, optional = false)
+    @JoinColumn(name = "user_uuid")
     private User user;
-}
\ No newline at end of file
+
+    @Enumerated(EnumType.STRING)
+    private KeyAlgorithm algorithm;
+
+    /**
+     * Keys are only ever inserted or removed, never updated, so saving new keys persists
+     * them directly instead of merging (which would first select the row by its assigned id).
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private boolean persisted;
+
+    public UserKeys(UUID userKeyUUID, byte[] publicKey, byte[] privateKey, User user, KeyAlgorithm algorithm) {
+        this.userKeyUUID = userKeyUUID;
+        this.publicKey = publicKey;
+        this.privateKey = privateKey;
+        this.user = user;
+        this.algorithm = algorithm;
+    }
+
+    @Override
+    public UUID getId() {
+        return userKeyUUID;
+    }
+
+    @Override
+    public boolean isNew() {
+        return !persisted;
+    }
+
+    @PostLoad
+    @PostPersist
+    void markPersisted() {
+        persisted = true;
+    }
+}
@@ -0,0 +1,152 @@
+package com.davidfandino.digital_signature_api.pool;
+
+import com.davidfandino.digital_signature_api.dto.KeyPairPoolStatsDto;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RSA key pairs generated ahead of time by background workers. Each pair is
+ * handed out once; when the pool is empty the caller generates inline.
+ * <p>
+ * The reported refill rate is the observed one: pairs generated per wall-clock
+ * second spent with at least one generation in flight, so the idle time of a
+ * full pool does not dilute it.
+ */
+@Component
+public class KeyPairPool {
+
+    private static final Logger log = LoggerFactory.getLogger(KeyPairPool.class);
+
+    public static final String ALGORITHM = "RSA";
+    public static final int KEY_SIZE = 2048;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int lowWaterMark;
+    private final int workers;
+
+    private final BlockingQueue<KeyPair> keyPairs;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicLong generated = new AtomicLong();
+    private final AtomicLong refillingNanos = new AtomicLong();
+    private final AtomicLong refillingSince = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    private ExecutorService executor;
+
+    public KeyPairPool(@Value("${app.keypool.enabled:true}") boolean enabled,
+                       @Value("${app.keypool.capacity:32}") int capacity,
+                       @Value("${app.keypool.low-water-mark:8}") int lowWaterMark,
+                       @Value("${app.keypool.workers:0}") int workers) {
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.workers = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        this.keyPairs = new LinkedBlockingQueue<>(Math.max(capacity, 1));
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        AtomicInteger threadCount = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "keypair-pool-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+        refill();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Returns a key pair that has never been handed out before, taken from the
+     * pool when available or generated on the calling thread otherwise.
+     */
+    public KeyPair acquire() throws NoSuchAlgorithmException {
+        KeyPair keyPair = keyPairs.poll();
+        if (keyPairs.size() < lowWaterMark) {
+            refill();
+        }
+        if (keyPair != null) {
+            hits.incrementAndGet();
+            return keyPair;
+        }
+        misses.incrementAndGet();
+        return generateKeyPair();
+    }
+
+    public KeyPairPoolStatsDto stats() {
+        long totalGenerated = generated.get();
+        long totalNanos = refillingNanos.get();
+        if (inFlight.get() > 0) {
+            totalNanos += System.nanoTime() - refillingSince.get();
+        }
+        double refillRatePerSecond = totalNanos <= 0 ? 0 : totalGenerated * 1_000_000_000d / totalNanos;
+        return new KeyPairPoolStatsDto(keyPairs.size(), capacity, lowWaterMark, workers, inFlight.get(),
+                totalGenerated, hits.get(), misses.get(), refillRatePerSecond);
+    }
+
+    private void refill() {
+        if (executor == null || executor.isShutdown()) {
+            return;
+        }
+        while (true) {
+            int pending = inFlight.get();
+            if (keyPairs.size() + pending >= capacity) {
+                return;
+            }
+            if (inFlight.compareAndSet(pending, pending + 1)) {
+                if (pending == 0) {
+                    refillingSince.set(System.nanoTime());
+                }
+                executor.execute(this::generateIntoPool);
+            }
+        }
+    }
+
+    private void generateIntoPool() {
+        try {
+            KeyPair keyPair = generateKeyPair();
+            generated.incrementAndGet();
+            keyPairs.offer(keyPair);
+        } catch (NoSuchAlgorithmException e) {
+            log.error("Unable to pre-generate key pairs", e);
+        } finally {
+            // Read before the decrement: once it reaches zero, a refill may start a new period
+            long since = refillingSince.get();
+            if (inFlight.decrementAndGet() == 0) {
+                refillingNanos.addAndGet(System.nanoTime() - since);
+            }
+        }
+    }
+
+    private KeyPair generateKeyPair() throws NoSuchAlgorithmException {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance(ALGORITHM);
+        keyPairGenerator.initialize(KEY_SIZE);
+        return keyPairGenerator.generateKeyPair();
+    }
+}
@@ -0,0 +1,17 @@
+package com.davidfandino.digital_signature_api.repository;
+
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+
+import java.util.UUID;
+
+public interface NifPrivateKey {
+
+    String getNif();
+
+    UUID getUserUUID();
+
+    byte[] getPrivateKey();
+
+    KeyAlgorithm getAlgorithm();
+
+}
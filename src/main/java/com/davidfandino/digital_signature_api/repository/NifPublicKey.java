@@ -0,0 +1,13 @@
+package com.davidfandino.digital_signature_api.repository;
+
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+
+public interface NifPublicKey {
+
+    String getNif();
+
+    byte[] getPublicKey();
+
+    KeyAlgorithm getAlgorithm();
+
+}
@@ -3,16 +3,31 @@ package com.davidfandino.digital_signature_api.repository;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 import java.util.UUID;
 
 @Repository
-public interface UserKeysRepository extends JpaRepository<UserKeys, UUID> {
+public interface UserKeysRepository extends JpaRepository<UserKeys, UUID>, UserKeysRepositoryCustom {
+
+    @Override
+    <S extends UserKeys> S save(S userKeys);
 
     Boolean existsByUser(User user);
-    Optional<UserKeys> findByUser(User user);
+
+    @Query("select u.nif as nif, k.userKeyUUID as userUUID, k.privateKey as privateKey, k.algorithm as algorithm from UserKeys k join k.user u where u.nif = :nif")
+    Optional<NifPrivateKey> findPrivateKeyByNif(@Param("nif") String nif);
+
+    @Query("select u.nif as nif, k.publicKey as publicKey, k.algorithm as algorithm from UserKeys k join k.user u where u.nif = :nif")
+    Optional<NifPublicKey> findPublicKeyByNif(@Param("nif") String nif);
+
+    @Query("select u.nif as nif, k.publicKey as publicKey, k.algorithm as algorithm from UserKeys k join k.user u where u.nif in :nifs")
+    List<NifPublicKey> findPublicKeysByNifIn(@Param("nifs") Collection<? extends String> nifs);
 
 
 }
\ No newline at end of file
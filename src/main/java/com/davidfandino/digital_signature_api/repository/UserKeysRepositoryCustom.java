@@ -0,0 +1,13 @@
+package com.davidfandino.digital_signature_api.repository;
+
+import com.davidfandino.digital_signature_api.model.UserKeys;
+
+public interface UserKeysRepositoryCustom {
+
+    /**
+     * Persists new keys, or merges existing ones. The keys share their user's
+     * identifier ({@code @MapsId}), so Hibernate cascades the persist to the user,
+     * which must therefore be attached to the persistence context.
+     */
+    <S extends UserKeys> S save(S userKeys);
+}
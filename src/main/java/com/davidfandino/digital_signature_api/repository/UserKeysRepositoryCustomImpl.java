@@ -0,0 +1,41 @@
+package com.davidfandino.digital_signature_api.repository;
+
+import com.davidfandino.digital_signature_api.model.User;
+import com.davidfandino.digital_signature_api.model.UserKeys;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.springframework.transaction.support.TransactionTemplate;
+
+class UserKeysRepositoryCustomImpl implements UserKeysRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    private final TransactionTemplate transactionTemplate;
+
+    UserKeysRepositoryCustomImpl(TransactionTemplate transactionTemplate) {
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    /**
+     * A detached user is replaced for the insert by a reference, which costs no
+     * query, and handed back to the caller once the keys are detached.
+     */
+    @Override
+    public <S extends UserKeys> S save(S userKeys) {
+        if (!userKeys.isNew()) {
+            return transactionTemplate.execute(status -> entityManager.merge(userKeys));
+        }
+        User user = userKeys.getUser();
+        transactionTemplate.executeWithoutResult(status -> {
+            if (!entityManager.contains(user)) {
+                userKeys.setUser(entityManager.getReference(User.class, user.getUserUUID()));
+            }
+            entityManager.persist(userKeys);
+        });
+        if (!entityManager.contains(userKeys)) {
+            userKeys.setUser(user);
+        }
+        return userKeys;
+    }
+}
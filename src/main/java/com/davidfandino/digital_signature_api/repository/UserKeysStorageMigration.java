@@ -0,0 +1,159 @@
+package com.davidfandino.digital_signature_api.repository;
+
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Converts user keys stored in the legacy layout to the current one. Runs at
+ * startup, after Hibernate has added the new columns and before requests are served:
+ * <ul>
+ * <li>Keys had their own {@code user_keyuuid} primary key; the table is keyed by
+ * {@code user_uuid} instead, the primary key shared with the user.</li>
+ * <li>Keys in the legacy text columns ({@code public_key} and {@code private_key},
+ * Base64 text in LOBs) are converted to the binary columns, re-encrypting the private
+ * key as an AES-GCM envelope, and are marked as RSA 2048, the only algorithm then.
+ * The legacy columns are dropped once every row has been converted.</li>
+ * </ul>
+ * Rows that cannot be converted are logged and startup is refused, rather than
+ * serving keys that are missing their binary columns. Converted rows are kept, so
+ * once the failed rows are fixed or deleted a restart resumes the conversion.
+ */
+@Component
+@DependsOn("entityManagerFactory")
+public class UserKeysStorageMigration {
+
+    private static final Logger log = LoggerFactory.getLogger(UserKeysStorageMigration.class);
+
+    private static final String TABLE = "user_keys";
+    private static final String LEGACY_PUBLIC_KEY = "public_key";
+    private static final String LEGACY_PRIVATE_KEY = "private_key";
+    private static final String LEGACY_ID = "user_keyuuid";
+    private static final int CHUNK_SIZE = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final EncryptionUtil encryptionUtil;
+    private final CryptoEngine cryptoEngine;
+    private final String secretKey;
+
+    public UserKeysStorageMigration(JdbcTemplate jdbcTemplate, EncryptionUtil encryptionUtil, CryptoEngine cryptoEngine,
+                                    @Value("${app.secret-key}") String secretKey) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.encryptionUtil = encryptionUtil;
+        this.cryptoEngine = cryptoEngine;
+        this.secretKey = secretKey;
+    }
+
+    @PostConstruct
+    public void migrateOnStartup() {
+        migrate();
+    }
+
+    /**
+     * @return the number of rows converted
+     */
+    public long migrate() {
+        if (hasColumn(LEGACY_ID)) {
+            keyByUser();
+        }
+        if (!hasColumn(LEGACY_PUBLIC_KEY) || !hasColumn(LEGACY_PRIVATE_KEY)) {
+            return 0;
+        }
+        SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), EncryptionUtil.ALGORITHM);
+        long migrated = 0;
+        long failed = 0;
+        UUID after = new UUID(0, 0);
+        List<LegacyKeys> rows;
+        while (!(rows = findLegacyKeys(after)).isEmpty()) {
+            List<Object[]> updates = new ArrayList<>(rows.size());
+            for (LegacyKeys row : rows) {
+                try {
+                    byte[] publicKey = Base64.getDecoder().decode(row.publicKey());
+                    byte[] privateKey = Base64.getDecoder().decode(encryptionUtil.decrypt(row.privateKey(), secretKeySpec));
+                    updates.add(new Object[]{publicKey, cryptoEngine.encrypt(privateKey, row.userUUID()), row.userUUID()});
+                } catch (Exception e) {
+                    failed++;
+                    log.warn("Could not convert the keys of user {} to binary storage: {}", row.userUUID(), e.getMessage());
+                }
+            }
+            jdbcTemplate.batchUpdate("update " + TABLE + " set public_key_der = ?, encrypted_private_key = ?, "
+                    + LEGACY_PUBLIC_KEY + " = null, " + LEGACY_PRIVATE_KEY + " = null where user_uuid = ?", updates);
+            migrated += updates.size();
+            after = rows.get(rows.size() - 1).userUUID();
+        }
+
+        log.info("Converted {} user keys to binary storage, {} failed", migrated, failed);
+
+        Long incomplete = jdbcTemplate.queryForObject("select count(*) from " + TABLE
+                + " where public_key_der is null or encrypted_private_key is null", Long.class);
+        if (incomplete != null && incomplete > 0) {
+            throw new IllegalStateException(incomplete + " user keys could not be converted to binary storage;"
+                    + " fix or delete them and restart, the legacy columns are kept until then");
+        }
+        jdbcTemplate.update("update " + TABLE + " set algorithm = ? where algorithm is null", KeyAlgorithm.RSA_2048.name());
+        jdbcTemplate.execute("alter table " + TABLE + " drop column " + LEGACY_PUBLIC_KEY);
+        jdbcTemplate.execute("alter table " + TABLE + " drop column " + LEGACY_PRIVATE_KEY);
+        return migrated;
+    }
+
+    /**
+     * Replaces the legacy {@code user_keyuuid} primary key with {@code user_uuid}.
+     */
+    private void keyByUser() {
+        Long duplicated = jdbcTemplate.queryForObject("select count(*) from (select user_uuid from " + TABLE
+                + " group by user_uuid having count(*) > 1)", Long.class);
+        if (duplicated != null && duplicated > 0) {
+            throw new IllegalStateException(duplicated + " users have more than one row of keys;"
+                    + " keep one row per user and restart");
+        }
+        jdbcTemplate.execute("alter table " + TABLE + " drop primary key");
+        jdbcTemplate.execute("alter table " + TABLE + " drop column " + LEGACY_ID);
+        jdbcTemplate.execute("alter table " + TABLE + " add primary key (user_uuid)");
+        log.info("Keyed user keys by user");
+    }
+
+    private List<LegacyKeys> findLegacyKeys(UUID after) {
+        JdbcTemplate query = new JdbcTemplate(jdbcTemplate.getDataSource());
+        query.setMaxRows(CHUNK_SIZE);
+        return query.query("select user_uuid, " + LEGACY_PUBLIC_KEY + ", " + LEGACY_PRIVATE_KEY + " from " + TABLE
+                        + " where public_key_der is null and " + LEGACY_PUBLIC_KEY + " is not null and user_uuid > ?"
+                        + " order by user_uuid",
+                (resultSet, rowNum) -> new LegacyKeys(resultSet.getObject(1, UUID.class),
+                        resultSet.getString(2), resultSet.getString(3)),
+                after);
+    }
+
+    private boolean hasColumn(String column) {
+        return Boolean.TRUE.equals(jdbcTemplate.execute((ConnectionCallback<Boolean>) connection -> {
+            DatabaseMetaData metaData = connection.getMetaData();
+            for (String name : List.of(column, column.toUpperCase())) {
+                try (ResultSet columns = metaData.getColumns(connection.getCatalog(), null,
+                        name.equals(column) ? TABLE : TABLE.toUpperCase(), name)) {
+                    if (columns.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }));
+    }
+
+    private record LegacyKeys(UUID userUUID, String publicKey, String privateKey) {
+    }
+}
@@ -1,9 +1,14 @@
 package com.davidfandino.digital_signature_api.repository;
 
 import com.davidfandino.digital_signature_api.model.User;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
@@ -13,5 +18,24 @@ public interface UserRepository extends JpaRepository<User, String> {
 
     Optional<User> getUserByNif(String nif);
 
+    @Query("select u.nif from User u where u.nif in :nifs")
+    List<String> findNifsByNifIn(@Param("nifs") Collection<String> nifs);
+
+    @Query("select u from User u where u.nif in :nifs and not exists (select k from UserKeys k where k.user = u)")
+    List<User> findUsersWithoutKeysByNifIn(@Param("nifs") Collection<String> nifs);
+
+    /**
+     * Pages through the users without keys in NIF order, starting after the given NIF.
+     * Users without a NIF, whose keys could never be used, are left out.
+     */
+    @Query("select u from User u where u.nif > :after and not exists (select k from UserKeys k where k.user = u) order by u.nif")
+    List<User> findUsersWithoutKeysAfter(@Param("after") String after, Limit limit);
+
+    /**
+     * Counts the users that {@link #findUsersWithoutKeysAfter} walks from the empty NIF.
+     */
+    @Query("select count(u) from User u where u.nif > '' and not exists (select k from UserKeys k where k.user = u)")
+    long countUsersWithoutKeys();
+
 }
 
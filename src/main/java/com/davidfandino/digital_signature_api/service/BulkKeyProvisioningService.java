@@ -0,0 +1,264 @@
+package com.davidfandino.digital_signature_api.service;
+
+import com.davidfandino.digital_signature_api.cache.BoundedCache;
+import com.davidfandino.digital_signature_api.dto.BulkKeyProvisioningJobDto;
+import com.davidfandino.digital_signature_api.event.UserKeysChangedEvent;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.KeyGenerationJobStatus;
+import com.davidfandino.digital_signature_api.model.User;
+import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates keys for many users as a background job. Users are taken in chunks,
+ * either from a list of NIFs or from all users without keys; the key pairs of a
+ * chunk are generated and encrypted in parallel on a fork-join pool sized to the
+ * cores and inserted with a single JDBC batch.
+ * <p>
+ * Every chunk is committed on its own and only users without keys are selected,
+ * so a job that stops midway is resumed by submitting it again. Queued and running
+ * jobs are held apart from the retained ones until they finish, so that the size
+ * and retention bounds only ever evict finished jobs.
+ */
+@Service
+public class BulkKeyProvisioningService {
+
+    private static final String INSERT_USER_KEYS =
+            "insert into user_keys (user_uuid, public_key_der, encrypted_private_key, algorithm) values (?, ?, ?, ?)";
+
+    private final UserRepository userRepository;
+    private final UserKeysService userKeysService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final SignatureMetrics signatureMetrics;
+    private final ForkJoinPool forkJoinPool;
+    private final ThreadPoolExecutor coordinator;
+    private final int chunkSize;
+    private final Map<UUID, Job> activeJobs = new ConcurrentHashMap<>();
+    private final BoundedCache<UUID, Job> jobs;
+
+    public BulkKeyProvisioningService(UserRepository userRepository, UserKeysService userKeysService,
+                                      JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                      ApplicationEventPublisher eventPublisher, SignatureMetrics signatureMetrics,
+                                      @Value("${app.keygen.bulk.parallelism:0}") int parallelism,
+                                      @Value("${app.keygen.bulk.chunk-size:256}") int chunkSize,
+                                      @Value("${app.keygen.bulk.queue-capacity:16}") int queueCapacity,
+                                      @Value("${app.keygen.jobs.max-retained:100000}") long maxRetained,
+                                      @Value("${app.keygen.jobs.retention:1h}") Duration retention) {
+        this.userRepository = userRepository;
+        this.userKeysService = userKeysService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventPublisher = eventPublisher;
+        this.signatureMetrics = signatureMetrics;
+        this.chunkSize = Math.max(chunkSize, 1);
+        this.jobs = new BoundedCache<>("bulkKeyProvisioningJobs", maxRetained, retention);
+        int threads = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.forkJoinPool = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("keygen-bulk-" + threadCount.incrementAndGet());
+            return thread;
+        }, null, false);
+        this.coordinator = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueCapacity, 1)), runnable -> {
+            Thread thread = new Thread(runnable, "keygen-bulk-coordinator");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        coordinator.shutdownNow();
+        forkJoinPool.shutdownNow();
+    }
+
+    /**
+     * Queues a job for the given NIFs, or for all users without keys when there are none.
+     * Jobs run one after another, each using the whole fork-join pool.
+     *
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public BulkKeyProvisioningJobDto submit(List<String> nifs, KeyAlgorithm keyAlgorithm) {
+        Job job = new Job(nifs == null || nifs.isEmpty() ? null : List.copyOf(new LinkedHashSet<>(nifs)), keyAlgorithm);
+        activeJobs.put(job.id, job);
+        try {
+            coordinator.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            activeJobs.remove(job.id);
+            throw e;
+        }
+        return job.toDto();
+    }
+
+    public Optional<BulkKeyProvisioningJobDto> getJob(UUID jobId) {
+        Job job = activeJobs.get(jobId);
+        return Optional.ofNullable(job != null ? job : jobs.getIfPresent(jobId)).map(Job::toDto);
+    }
+
+    private void run(Job job) {
+        job.status = KeyGenerationJobStatus.RUNNING;
+        try {
+            provisionAll(job);
+        } finally {
+            // Retained before leaving the active jobs, so that the job is never missing in between
+            jobs.put(job.id, job);
+            activeJobs.remove(job.id);
+        }
+    }
+
+    private void provisionAll(Job job) {
+        try {
+            if (job.nifs != null) {
+                job.total.set(job.nifs.size());
+                for (int from = 0; from < job.nifs.size(); from += chunkSize) {
+                    List<String> nifs = job.nifs.subList(from, Math.min(from + chunkSize, job.nifs.size()));
+                    List<User> users = userRepository.findUsersWithoutKeysByNifIn(nifs);
+                    job.skipped.addAndGet(nifs.size() - users.size());
+                    job.processed.addAndGet(nifs.size() - users.size());
+                    provision(job, users);
+                }
+            } else {
+                job.total.set(userRepository.countUsersWithoutKeys());
+                String after = "";
+                List<User> users;
+                while (!(users = userRepository.findUsersWithoutKeysAfter(after, Limit.of(chunkSize))).isEmpty()) {
+                    provision(job, users);
+                    after = users.get(users.size() - 1).getNif();
+                }
+            }
+            job.complete(job.failed.get() == 0 ? KeyGenerationJobStatus.COMPLETED : KeyGenerationJobStatus.FAILED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            job.error = "Interrupted";
+            job.complete(KeyGenerationJobStatus.FAILED);
+        } catch (Exception e) {
+            job.error = e.getMessage();
+            job.complete(KeyGenerationJobStatus.FAILED);
+        }
+    }
+
+    private void provision(Job job, List<User> users) throws InterruptedException {
+        List<Callable<UserKeys>> tasks = users.stream()
+                .<Callable<UserKeys>>map(user -> () -> generateKeys(job, user))
+                .toList();
+        List<UserKeys> userKeys = new ArrayList<>(users.size());
+        for (Future<UserKeys> result : forkJoinPool.invokeAll(tasks)) {
+            try {
+                UserKeys keys = result.get();
+                if (keys != null) {
+                    userKeys.add(keys);
+                }
+            } catch (ExecutionException e) {
+                throw new IllegalStateException(e.getCause());
+            }
+        }
+        if (!userKeys.isEmpty()) {
+            signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_PERSIST, () -> insert(job, userKeys));
+        }
+        job.processed.addAndGet(users.size());
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    /**
+     * Generates the user's key pair directly rather than from the key pair pool, which
+     * is left for interactive requests. Failures are counted and the user is skipped.
+     */
+    private UserKeys generateKeys(Job job, User user) {
+        try {
+            return userKeysService.encryptKeys(user, job.keyAlgorithm,
+                    signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_GENERATE,
+                            job.keyAlgorithm::generateKeyPair));
+        } catch (Exception e) {
+            job.failed.incrementAndGet();
+            job.error = "Error generating keys for user with NIF " + user.getNif() + ": " + e.getMessage();
+            return null;
+        }
+    }
+
+    private Void insert(Job job, List<UserKeys> userKeys) {
+        try {
+            transactionTemplate.executeWithoutResult(status -> batchInsert(userKeys));
+            userKeysInserted(job, userKeys);
+        } catch (DuplicateKeyException e) {
+            // Keys generated concurrently for a user of the chunk: insert row by row and skip those
+            for (UserKeys keys : userKeys) {
+                try {
+                    batchInsert(List.of(keys));
+                    userKeysInserted(job, List.of(keys));
+                } catch (DuplicateKeyException rowException) {
+                    job.skipped.incrementAndGet();
+                }
+            }
+        }
+        return null;
+    }
+
+    private void batchInsert(List<UserKeys> userKeys) {
+        jdbcTemplate.batchUpdate(INSERT_USER_KEYS, userKeys, userKeys.size(), (statement, keys) -> {
+            statement.setObject(1, keys.getUserKeyUUID());
+            statement.setBytes(2, keys.getPublicKey());
+            statement.setBytes(3, keys.getPrivateKey());
+            statement.setString(4, keys.getAlgorithm().name());
+        });
+    }
+
+    /**
+     * The batch bypasses the entity listener, so the change events are published here.
+     */
+    private void userKeysInserted(Job job, List<UserKeys> userKeys) {
+        job.generated.addAndGet(userKeys.size());
+        userKeys.forEach(keys -> eventPublisher.publishEvent(new UserKeysChangedEvent(keys.getUser().getNif())));
+    }
+
+    private static final class Job {
+        private final UUID id = UUID.randomUUID();
+        private final List<String> nifs;
+        private final KeyAlgorithm keyAlgorithm;
+        private final LocalDateTime creationDate = LocalDateTime.now();
+        private final AtomicLong total = new AtomicLong();
+        private final AtomicLong processed = new AtomicLong();
+        private final AtomicLong generated = new AtomicLong();
+        private final AtomicLong skipped = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private volatile KeyGenerationJobStatus status = KeyGenerationJobStatus.PENDING;
+        private volatile String error;
+        private volatile LocalDateTime completionDate;
+
+        private Job(List<String> nifs, KeyAlgorithm keyAlgorithm) {
+            this.nifs = nifs;
+            this.keyAlgorithm = keyAlgorithm;
+        }
+
+        private void complete(KeyGenerationJobStatus status) {
+            this.completionDate = LocalDateTime.now();
+            this.status = status;
+        }
+
+        private BulkKeyProvisioningJobDto toDto() {
+            KeyGenerationJobStatus currentStatus = status;
+            return new BulkKeyProvisioningJobDto(id, keyAlgorithm, currentStatus, total.get(), processed.get(),
+                    generated.get(), skipped.get(), failed.get(), error, creationDate, completionDate);
+        }
+    }
+}
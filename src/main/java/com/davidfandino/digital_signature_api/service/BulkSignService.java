@@ -0,0 +1,153 @@
+package com.davidfandino.digital_signature_api.service;
+
+import com.davidfandino.digital_signature_api.dto.BulkSignResultDto;
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.utils.DigestedDocumentReader;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.PrivateKey;
+import java.util.ArrayDeque;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Signs an NDJSON stream of {nif, documentBase64} records on a bounded worker
+ * pool and writes one NDJSON result per record, in input order. Each distinct
+ * NIF's key is resolved once per batch and failures are reported per record.
+ */
+@Service
+public class BulkSignService {
+
+    private final SignService signService;
+    private final KeyAlgorithmService keyAlgorithmService;
+    private final ObjectMapper objectMapper;
+    private final ExecutorService executor;
+    private final int window;
+    private final int spoolThreshold;
+
+    public BulkSignService(SignService signService, KeyAlgorithmService keyAlgorithmService, ObjectMapper objectMapper,
+                           @Value("${app.bulk.workers:0}") int workers,
+                           @Value("${app.bulk.window:1024}") int window,
+                           @Value("${app.document.spool-threshold:1048576}") int spoolThreshold) {
+        this.signService = signService;
+        this.keyAlgorithmService = keyAlgorithmService;
+        this.objectMapper = objectMapper;
+        this.spoolThreshold = spoolThreshold;
+        this.window = Math.max(window, 1);
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "bulk-sign-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    public long signAll(InputStream input, OutputStream output) throws IOException {
+        Map<String, CompletableFuture<PrivateKey>> privateKeys = new ConcurrentHashMap<>();
+        Deque<CompletableFuture<BulkSignResultDto>> pending = new ArrayDeque<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+
+        long index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long recordIndex = index++;
+            String record = line;
+            pending.addLast(CompletableFuture.supplyAsync(() -> signRecord(recordIndex, record, privateKeys), executor));
+            while (pending.size() >= window) {
+                writeResult(pending.removeFirst(), writer);
+            }
+        }
+        while (!pending.isEmpty()) {
+            writeResult(pending.removeFirst(), writer);
+        }
+        writer.flush();
+        return index;
+    }
+
+    private BulkSignResultDto signRecord(long index, String record, Map<String, CompletableFuture<PrivateKey>> privateKeys) {
+        DigestedDocumentDto document;
+        try (JsonParser parser = objectMapper.getFactory().createParser(record)) {
+            document = DigestedDocumentReader.read(parser, keyAlgorithmService::requiresFullDocumentToSign, spoolThreshold);
+        } catch (IOException | IllegalArgumentException e) {
+            return new BulkSignResultDto(index, null, null, "Malformed record: " + e.getMessage());
+        }
+
+        try (document) {
+            String nif = document.getNif();
+            if (nif == null) {
+                return new BulkSignResultDto(index, null, null, "The nif field is required.");
+            }
+            if (document.getDocumentDigest() == null) {
+                return new BulkSignResultDto(index, nif, null, "The documentBase64 field is required.");
+            }
+            return signRecord(index, nif, document, privateKeys);
+        }
+    }
+
+    private BulkSignResultDto signRecord(long index, String nif, DigestedDocumentDto document,
+                                         Map<String, CompletableFuture<PrivateKey>> privateKeys) {
+        try {
+            PrivateKey privateKey = resolvePrivateKey(nif, privateKeys);
+            byte[] signatureBytes = signService.signDigestedDocument(document, privateKey);
+            return new BulkSignResultDto(index, nif, Base64.getEncoder().encodeToString(signatureBytes), null);
+        } catch (UserNotFoundException e) {
+            return new BulkSignResultDto(index, nif, null, "User with nif " + nif + " not found.");
+        } catch (UserKeysNotFoundException e) {
+            return new BulkSignResultDto(index, nif, null, "User keys with nif " + nif + " have not been found");
+        } catch (Exception e) {
+            return new BulkSignResultDto(index, nif, null, "Error when signing the document.");
+        }
+    }
+
+    private PrivateKey resolvePrivateKey(String nif, Map<String, CompletableFuture<PrivateKey>> privateKeys) {
+        CompletableFuture<PrivateKey> privateKey = new CompletableFuture<>();
+        CompletableFuture<PrivateKey> existing = privateKeys.putIfAbsent(nif, privateKey);
+        if (existing != null) {
+            privateKey = existing;
+        } else {
+            try {
+                privateKey.complete(signService.getPrivateKey(nif));
+            } catch (RuntimeException e) {
+                privateKey.completeExceptionally(e);
+            }
+        }
+        try {
+            return privateKey.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+    }
+
+    private void writeResult(CompletableFuture<BulkSignResultDto> result, Writer writer) throws IOException {
+        if (!result.isDone()) {
+            writer.flush();
+        }
+        writer.write(objectMapper.writeValueAsString(result.join()));
+        writer.write('\n');
+    }
+}
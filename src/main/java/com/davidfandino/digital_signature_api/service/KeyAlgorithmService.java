@@ -0,0 +1,46 @@
+package com.davidfandino.digital_signature_api.service;
+
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import org.springframework.stereotype.Service;
+
+import java.security.Key;
+import java.util.function.Supplier;
+
+@Service
+public class KeyAlgorithmService {
+
+    private final SignService signService;
+    private final SignatureVerificationService signatureVerificationService;
+
+    public KeyAlgorithmService(SignService signService, SignatureVerificationService signatureVerificationService) {
+        this.signService = signService;
+        this.signatureVerificationService = signatureVerificationService;
+    }
+
+    /**
+     * Whether the NIF's private key needs the whole document rather than its
+     * digest. The key is resolved through the private key cache, so the
+     * signature that follows reuses the same load.
+     */
+    public boolean requiresFullDocumentToSign(String nif) {
+        return requiresFullDocument(() -> signService.getPrivateKey(nif));
+    }
+
+    /**
+     * Whether the NIF's public key needs the whole document rather than its
+     * digest. The key is resolved through the public key cache, so the
+     * verification that follows reuses the same load.
+     */
+    public boolean requiresFullDocumentToVerify(String nif) {
+        return requiresFullDocument(() -> signatureVerificationService.getPublicKey(nif));
+    }
+
+    private static boolean requiresFullDocument(Supplier<Key> key) {
+        try {
+            return !KeyAlgorithm.fromKey(key.get()).isDigestSigningSupported();
+        } catch (RuntimeException e) {
+            // Missing users or keys are reported by the operation itself, which needs no document for that
+            return false;
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.davidfandino.digital_signature_api.service;
+
+import com.davidfandino.digital_signature_api.cache.BoundedCache;
+import com.davidfandino.digital_signature_api.dto.KeyGenerationJobDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.KeyGenerationJobStatus;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs key generation as background jobs on a bounded executor. Concurrent
+ * requests for a NIF that already has a job in flight get that same job, so
+ * client retries do not multiply the key generation cost. Queued and running
+ * jobs are held apart from the retained ones until they finish, so that the size
+ * and retention bounds only ever evict finished jobs, which stay queryable for
+ * the configured retention.
+ */
+@Service
+public class KeyGenerationJobService {
+
+    private final UserKeysService userKeysService;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, Job> inFlightJobs = new ConcurrentHashMap<>();
+    private final Map<UUID, Job> activeJobs = new ConcurrentHashMap<>();
+    private final BoundedCache<UUID, Job> jobs;
+
+    public KeyGenerationJobService(UserKeysService userKeysService,
+                                   @Value("${app.keygen.jobs.workers:0}") int workers,
+                                   @Value("${app.keygen.jobs.queue-capacity:1000}") int queueCapacity,
+                                   @Value("${app.keygen.jobs.max-retained:100000}") long maxRetained,
+                                   @Value("${app.keygen.jobs.retention:1h}") Duration retention) {
+        this.userKeysService = userKeysService;
+        this.jobs = new BoundedCache<>("keyGenerationJobs", maxRetained, retention);
+        int threads = workers > 0 ? workers : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadCount = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(queueCapacity, 1)), runnable -> {
+            Thread thread = new Thread(runnable, "keygen-job-" + threadCount.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Returns the in-flight job for the NIF if there is one, otherwise validates the
+     * user and queues a new job.
+     *
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public KeyGenerationJobDto submit(String nif, KeyAlgorithm keyAlgorithm) {
+        Job inFlight = inFlightJobs.get(nif);
+        if (inFlight != null) {
+            return inFlight.toDto();
+        }
+        userKeysService.findUserWithoutKeys(nif);
+
+        Job job = new Job(nif, keyAlgorithm);
+        Job existing = inFlightJobs.putIfAbsent(nif, job);
+        if (existing != null) {
+            return existing.toDto();
+        }
+        activeJobs.put(job.id, job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            inFlightJobs.remove(nif, job);
+            activeJobs.remove(job.id);
+            throw e;
+        }
+        return job.toDto();
+    }
+
+    public Optional<KeyGenerationJobDto> getJob(UUID jobId) {
+        Job job = activeJobs.get(jobId);
+        return Optional.ofNullable(job != null ? job : jobs.getIfPresent(jobId)).map(Job::toDto);
+    }
+
+    private void run(Job job) {
+        job.status = KeyGenerationJobStatus.RUNNING;
+        try {
+            userKeysService.generateKeys(job.nif, job.keyAlgorithm);
+            job.complete(KeyGenerationJobStatus.COMPLETED, null);
+        } catch (Exception e) {
+            job.complete(KeyGenerationJobStatus.FAILED, e.getMessage());
+        } finally {
+            // Retained before leaving the active jobs, so that the job is never missing in between
+            jobs.put(job.id, job);
+            activeJobs.remove(job.id);
+            inFlightJobs.remove(job.nif, job);
+        }
+    }
+
+    private static final class Job {
+        private final UUID id = UUID.randomUUID();
+        private final String nif;
+        private final KeyAlgorithm keyAlgorithm;
+        private final LocalDateTime creationDate = LocalDateTime.now();
+        private volatile KeyGenerationJobStatus status = KeyGenerationJobStatus.PENDING;
+        private volatile String error;
+        private volatile LocalDateTime completionDate;
+
+        private Job(String nif, KeyAlgorithm keyAlgorithm) {
+            this.nif = nif;
+            this.keyAlgorithm = keyAlgorithm;
+        }
+
+        private void complete(KeyGenerationJobStatus status, String error) {
+            this.error = error;
+            this.completionDate = LocalDateTime.now();
+            this.status = status;
+        }
+
+        private KeyGenerationJobDto toDto() {
+            KeyGenerationJobStatus currentStatus = status;
+            return new KeyGenerationJobDto(id, nif, keyAlgorithm, currentStatus, error, creationDate, completionDate);
+        }
+    }
+}
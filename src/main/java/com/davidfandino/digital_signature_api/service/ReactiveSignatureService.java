@@ -0,0 +1,126 @@
+package com.davidfandino.digital_signature_api.service;
+
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.utils.DataBufferDocumentReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Predicate;
+
+/**
+ * Non-blocking front of the sign, verify and key generation services for the
+ * reactive edition. Binary documents are hashed as their buffers arrive on the
+ * event loop; the lookup that decides whether a document must also be spooled
+ * runs on the bounded elastic scheduler, and the crypto work on a scheduler
+ * sized to the cores with a bounded queue. Key resolution inside the services is
+ * served from the key caches on the hot path.
+ * <p>
+ * Work that does not fit the crypto queue fails with a
+ * {@link RejectedExecutionException}, counted with outcome "rejected".
+ */
+@Service
+@ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+public class ReactiveSignatureService {
+
+    private final SignService signService;
+    private final SignatureVerificationService signatureVerificationService;
+    private final UserKeysService userKeysService;
+    private final KeyAlgorithmService keyAlgorithmService;
+    private final SignatureMetrics signatureMetrics;
+    private final Scheduler cryptoScheduler;
+    private final int spoolThreshold;
+
+    public ReactiveSignatureService(SignService signService, SignatureVerificationService signatureVerificationService,
+                                    UserKeysService userKeysService, KeyAlgorithmService keyAlgorithmService,
+                                    SignatureMetrics signatureMetrics,
+                                    @Value("${app.reactive.crypto.threads:0}") int threads,
+                                    @Value("${app.reactive.crypto.queue-capacity:10000}") int queueCapacity,
+                                    @Value("${app.document.spool-threshold:1048576}") int spoolThreshold) {
+        this.signService = signService;
+        this.signatureVerificationService = signatureVerificationService;
+        this.userKeysService = userKeysService;
+        this.keyAlgorithmService = keyAlgorithmService;
+        this.signatureMetrics = signatureMetrics;
+        this.spoolThreshold = spoolThreshold;
+        this.cryptoScheduler = Schedulers.newBoundedElastic(
+                threads > 0 ? threads : Runtime.getRuntime().availableProcessors(),
+                Math.max(queueCapacity, 1), "reactive-crypto");
+    }
+
+    @PreDestroy
+    public void stop() {
+        cryptoScheduler.dispose();
+    }
+
+    public Mono<String> signDocument(SignDocumentDto signDocumentDto) {
+        return onCryptoScheduler(SignatureMetrics.SIGN, () -> signService.signDocument(signDocumentDto));
+    }
+
+    public Mono<String> signDocument(String nif, Flux<DataBuffer> document) {
+        DigestedDocumentDto digestedDocumentDto = new DigestedDocumentDto();
+        digestedDocumentDto.setNif(nif);
+        return read(document, digestedDocumentDto, keyAlgorithmService::requiresFullDocumentToSign)
+                .flatMap(digested -> onCryptoScheduler(SignatureMetrics.SIGN, () -> signService.signDocument(digested))
+                        .doFinally(signal -> digested.close()));
+    }
+
+    public Mono<String> signDigest(String nif, byte[] documentDigest) {
+        return onCryptoScheduler(SignatureMetrics.SIGN, () -> signService.signDigest(nif, documentDigest));
+    }
+
+    public Mono<Boolean> verifySignature(VerifySignatureDto verifySignatureDto) {
+        return onCryptoScheduler(SignatureMetrics.VERIFY,
+                () -> signatureVerificationService.verifySignature(verifySignatureDto));
+    }
+
+    public Mono<Boolean> verifySignature(String nif, Flux<DataBuffer> document, String signatureBase64) {
+        DigestedDocumentDto digestedDocumentDto = new DigestedDocumentDto();
+        digestedDocumentDto.setNif(nif);
+        digestedDocumentDto.setSignatureBase64(signatureBase64);
+        return read(document, digestedDocumentDto, keyAlgorithmService::requiresFullDocumentToVerify)
+                .flatMap(digested -> onCryptoScheduler(SignatureMetrics.VERIFY,
+                        () -> signatureVerificationService.verifySignature(digested))
+                        .doFinally(signal -> digested.close()));
+    }
+
+    public Mono<Boolean> verifyDigest(String nif, byte[] documentDigest, String signatureBase64) {
+        return onCryptoScheduler(SignatureMetrics.VERIFY,
+                () -> signatureVerificationService.verifyDigest(nif, documentDigest, signatureBase64));
+    }
+
+    public Mono<UserKeys> generateKeys(String nif, KeyAlgorithm keyAlgorithm) {
+        return onCryptoScheduler(SignatureMetrics.KEYGEN, () -> userKeysService.generateKeys(nif, keyAlgorithm));
+    }
+
+    /**
+     * Digests the body, spooling it too when the NIF's key cannot sign a digest.
+     * The services release the spooled document once used; it is also released
+     * here when the crypto scheduler never runs them.
+     */
+    private Mono<DigestedDocumentDto> read(Flux<DataBuffer> document, DigestedDocumentDto digestedDocumentDto,
+                                           Predicate<String> requiresFullDocument) {
+        return Mono.fromCallable(() -> requiresFullDocument.test(digestedDocumentDto.getNif()))
+                .subscribeOn(Schedulers.boundedElastic())
+                .flatMap(spool -> DataBufferDocumentReader.read(document, digestedDocumentDto, spool, spoolThreshold));
+    }
+
+    private <T> Mono<T> onCryptoScheduler(String operation, Callable<T> call) {
+        return Mono.fromCallable(call)
+                .subscribeOn(cryptoScheduler)
+                .doOnError(RejectedExecutionException.class, e -> signatureMetrics.recordRejected(operation));
+    }
+}
@@ -1,20 +1,24 @@
 package com.davidfandino.digital_signature_api.service;
 
+import com.davidfandino.digital_signature_api.cache.PrivateKeyCache;
+import com.davidfandino.digital_signature_api.cache.SignatureCache;
+import com.davidfandino.digital_signature_api.cache.SingleFlight;
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
 import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
 import com.davidfandino.digital_signature_api.exception.*;
-import com.davidfandino.digital_signature_api.model.User;
-import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.repository.NifPrivateKey;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
-import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
+import com.davidfandino.digital_signature_api.utils.StreamUtil;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.spec.SecretKeySpec;
-import java.security.KeyFactory;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.security.PrivateKey;
-import java.security.Signature;
-import java.security.spec.PKCS8EncodedKeySpec;
 import java.util.Base64;
 
 @Service
@@ -24,55 +28,188 @@ public class SignService {
     private UserKeysRepository userKeysRepository;
 
     @Autowired
-    private EncryptionUtil encryptionUtil;
+    private CryptoEngine cryptoEngine;
 
     @Autowired
     private UserService userService;
 
-    @Value("${app.secret-key}")
-    public String secretKey;
+    @Autowired
+    private PrivateKeyCache privateKeyCache;
+
+    @Autowired
+    private SignatureCache signatureCache;
+
+    @Autowired
+    private SignatureMetrics signatureMetrics;
+
+    private final SingleFlight<SignatureCache.Key, byte[]> inFlightSignatures =
+            new SingleFlight<>(() -> signatureMetrics.recordCoalesced(SignatureMetrics.SIGN));
 
     public String signDocument(SignDocumentDto signDocumentDto) throws Exception {
-        try {
-            User user = userService.getUserByNif(signDocumentDto.getNif());
-            if (user == null) {
-                throw new UserNotFoundException("User not found with NIF: " + signDocumentDto.getNif());
+        return signatureMetrics.measure(SignatureMetrics.SIGN, () -> {
+            try {
+                PrivateKey privateKey = getPrivateKey(signDocumentDto.getNif());
+
+                byte[] documentBytes = Base64.getDecoder().decode(signDocumentDto.getDocumentBase64());
+                byte[] documentDigest = DigestSignatureUtil.newDigest().digest(documentBytes);
+                byte[] signatureBytes = signOnce(signDocumentDto.getNif(), documentDigest, privateKey,
+                        () -> signData(documentBytes, privateKey));
+
+                return Base64.getEncoder().encodeToString(signatureBytes);
+            } catch (UserNotFoundException e) {
+                throw new UserNotFoundException(e.getMessage());
+            } catch (UserKeysNotFoundException e) {
+                throw new UserKeysNotFoundException(e.getMessage());
+            } catch (DecryptKeyErrorException e){
+                throw new DecryptKeyErrorException(e.getMessage());
+            } catch (Exception e) {
+                throw new SignDocumentErrorException(e.getMessage());
             }
+        });
+    }
 
-            UserKeys userKeys = userKeysRepository.findByUser(user)
-                    .orElseThrow(() -> new UserKeysNotFoundException("The keys for the user with NIF " + signDocumentDto.getNif() +" were not found."));
+    public String signDocument(String nif, InputStream document) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.SIGN, () -> {
+            try {
+                PrivateKey privateKey = getPrivateKey(nif);
 
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), encryptionUtil.ALGORITHM);
-            String decryptedPrivateKey = encryptionUtil.decrypt(userKeys.getPrivateKey(), secretKeySpec);
+                return Base64.getEncoder().encodeToString(signStream(document, privateKey));
+            } catch (UserNotFoundException | UserKeysNotFoundException | DecryptKeyErrorException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SignDocumentErrorException(e.getMessage());
+            }
+        });
+    }
 
-            byte[] documentBytes = Base64.getDecoder().decode(signDocumentDto.getDocumentBase64());
+    /**
+     * Signs a document read by the streaming JSON reader: from its digest when the
+     * key type allows it, otherwise from the spooled document.
+     */
+    public String signDocument(DigestedDocumentDto digestedDocumentDto) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.SIGN, () -> {
+            try (digestedDocumentDto) {
+                PrivateKey privateKey = getPrivateKey(digestedDocumentDto.getNif());
+                return Base64.getEncoder().encodeToString(signDigestedDocument(digestedDocumentDto, privateKey));
+            } catch (UserNotFoundException | UserKeysNotFoundException | DecryptKeyErrorException
+                     | UnsupportedKeyOperationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SignDocumentErrorException(e.getMessage());
+            }
+        });
+    }
 
-            PrivateKey privateKey = getPrivateKeyFromString(decryptedPrivateKey);
-            byte[] signatureBytes = signData(documentBytes, privateKey);
+    public String signDigest(String nif, byte[] documentDigest) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.SIGN, () -> {
+            try {
+                PrivateKey privateKey = getPrivateKey(nif);
+                if (!KeyAlgorithm.fromKey(privateKey).isDigestSigningSupported()) {
+                    throw DigestSignatureUtil.unsupportedDigestSigning();
+                }
+                byte[] signatureBytes = signOnce(nif, documentDigest, privateKey,
+                        () -> signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_CRYPTO,
+                                () -> cryptoEngine.signDigest(documentDigest, privateKey)));
+                return Base64.getEncoder().encodeToString(signatureBytes);
+            } catch (UserNotFoundException | UserKeysNotFoundException | DecryptKeyErrorException
+                     | UnsupportedKeyOperationException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SignDocumentErrorException(e.getMessage());
+            }
+        });
+    }
 
-            return Base64.getEncoder().encodeToString(signatureBytes);
-        } catch (UserNotFoundException e) {
-            throw new UserNotFoundException(e.getMessage());
-        } catch (UserKeysNotFoundException e) {
-            throw new UserKeysNotFoundException(e.getMessage());
-        } catch (DecryptKeyErrorException e){
-            throw new DecryptKeyErrorException(e.getMessage());
+    public byte[] signDigestedDocument(DigestedDocumentDto digestedDocumentDto, PrivateKey privateKey) throws Exception {
+        boolean digestSigningSupported = KeyAlgorithm.fromKey(privateKey).isDigestSigningSupported();
+        if (!digestSigningSupported && digestedDocumentDto.getDocument() == null) {
+            throw DigestSignatureUtil.unsupportedDigestSigning();
+        }
+        return signOnce(digestedDocumentDto.getNif(), digestedDocumentDto.getDocumentDigest(), privateKey, () -> {
+            if (digestSigningSupported) {
+                signatureMetrics.recordDocumentSize(SignatureMetrics.SIGN, digestedDocumentDto.getDocumentSize());
+                return signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_CRYPTO,
+                        () -> cryptoEngine.signDigest(digestedDocumentDto.getDocumentDigest(), privateKey));
+            }
+            try (InputStream document = digestedDocumentDto.getDocument().openStream()) {
+                return signStream(document, privateKey);
+            }
+        });
+    }
+
+    /**
+     * Returns the cached signature of the digest when the key type signs
+     * deterministically. Otherwise signs it, sharing a single signing operation
+     * between concurrent requests for the same NIF, digest and key.
+     */
+    private byte[] signOnce(String nif, byte[] documentDigest, PrivateKey privateKey,
+                            SignatureMetrics.Stage<byte[], Exception> sign) throws Exception {
+        boolean cacheable = signatureCache.isCacheable(privateKey);
+        if (cacheable) {
+            byte[] signatureBytes = signatureCache.get(nif, documentDigest, privateKey);
+            if (signatureBytes != null) {
+                return signatureBytes;
+            }
+        }
+        SignatureCache.Key key = new SignatureCache.Key(nif, ByteBuffer.wrap(documentDigest));
+        return inFlightSignatures.execute(key, privateKey, () -> {
+            byte[] signatureBytes = sign.call();
+            if (cacheable) {
+                signatureCache.put(nif, documentDigest, privateKey, signatureBytes);
+            }
+            return signatureBytes;
+        });
+    }
+
+    public PrivateKey getPrivateKey(String nif) {
+        return signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_KEY_RESOLUTION,
+                () -> privateKeyCache.get(nif, this::loadPrivateKey));
+    }
+
+    /**
+     * Fetches only the key material for the NIF in a single query; the user is
+     * looked up separately only to tell a missing user from missing keys.
+     */
+    private PrivateKey loadPrivateKey(String nif) {
+        NifPrivateKey nifPrivateKey = signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_KEYS_LOOKUP,
+                () -> userKeysRepository.findPrivateKeyByNif(nif))
+                .orElseThrow(() -> keysNotFound(nif));
+
+        byte[] decryptedPrivateKey = signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_DECRYPT,
+                () -> cryptoEngine.decrypt(nifPrivateKey.getPrivateKey(), nifPrivateKey.getUserUUID()));
+
+        try {
+            return signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_PARSE,
+                    () -> cryptoEngine.parsePrivateKey(decryptedPrivateKey, KeyAlgorithm.orDefault(nifPrivateKey.getAlgorithm())));
         } catch (Exception e) {
             throw new SignDocumentErrorException(e.getMessage());
         }
     }
 
-    private PrivateKey getPrivateKeyFromString(String key) throws Exception {
-        byte[] keyBytes = Base64.getDecoder().decode(key);
-        PKCS8EncodedKeySpec spec = new PKCS8EncodedKeySpec(keyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        return keyFactory.generatePrivate(spec);
+    private RuntimeException keysNotFound(String nif) {
+        boolean userExists = signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_USER_LOOKUP,
+                () -> userService.existUserWithNif(nif));
+        return userExists
+                ? new UserKeysNotFoundException("The keys for the user with NIF " + nif + " were not found.")
+                : new UserNotFoundException("User with NIF " + nif + " not found.");
     }
 
     private byte[] signData(byte[] data, PrivateKey privateKey) throws Exception {
-        Signature signature = Signature.getInstance("SHA256withRSA");
-        signature.initSign(privateKey);
-        signature.update(data);
-        return signature.sign();
+        signatureMetrics.recordDocumentSize(SignatureMetrics.SIGN, data.length);
+        return signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_CRYPTO,
+                () -> cryptoEngine.withSignature(privateKey, signature -> {
+                    signature.initSign(privateKey);
+                    signature.update(data);
+                    return signature.sign();
+                }));
+    }
+
+    private byte[] signStream(InputStream document, PrivateKey privateKey) throws Exception {
+        return signatureMetrics.time(SignatureMetrics.SIGN, SignatureMetrics.STAGE_CRYPTO,
+                () -> cryptoEngine.withSignature(privateKey, signature -> {
+                    signature.initSign(privateKey);
+                    signatureMetrics.recordDocumentSize(SignatureMetrics.SIGN, StreamUtil.updateSignature(signature, document));
+                    return signature.sign();
+                }));
     }
 }
\ No newline at end of file
@@ -1,18 +1,29 @@
 package com.davidfandino.digital_signature_api.service;
 
+import com.davidfandino.digital_signature_api.cache.PublicKeyCache;
+import com.davidfandino.digital_signature_api.cache.VerificationCache;
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
+import com.davidfandino.digital_signature_api.dto.BatchVerifyResultDto;
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
 import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
 import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
-import com.davidfandino.digital_signature_api.model.User;
-import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.repository.NifPublicKey;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.davidfandino.digital_signature_api.utils.DigestSignatureUtil;
+import com.davidfandino.digital_signature_api.utils.StreamUtil;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
-import java.security.KeyFactory;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
 import java.security.PublicKey;
-import java.security.Signature;
-import java.security.spec.X509EncodedKeySpec;
-import java.util.Base64;
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 @Service
 public class SignatureVerificationService {
@@ -23,24 +34,224 @@ public class SignatureVerificationService {
     @Autowired
     private UserService userService;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PublicKeyCache publicKeyCache;
+
+    @Autowired
+    private VerificationCache verificationCache;
+
+    @Autowired
+    private SignatureMetrics signatureMetrics;
+
+    @Autowired
+    private CryptoEngine cryptoEngine;
+
     public boolean verifySignature(VerifySignatureDto verifySignatureDto) throws Exception {
-        User user = userService.getUserByNif(verifySignatureDto.getNif());
-        UserKeys userKeys = userKeysRepository.findByUser(user)
-                .orElseThrow(() -> new UserKeysNotFoundException("No keys were found for the user with NIF: " + verifySignatureDto.getNif()));
+        return signatureMetrics.measure(SignatureMetrics.VERIFY, () -> {
+            PublicKey publicKey = getPublicKey(verifySignatureDto.getNif());
+
+            byte[] documentBytes = Base64.getDecoder().decode(verifySignatureDto.getDocumentBase64());
+            byte[] signatureBytes = Base64.getDecoder().decode(verifySignatureDto.getSignatureBase64());
+
+            return verifyData(verifySignatureDto.getNif(), documentBytes, signatureBytes, publicKey);
+        });
+    }
+
+    public boolean verifySignature(String nif, InputStream document, String signatureBase64) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.VERIFY, () -> {
+            PublicKey publicKey = getPublicKey(nif);
+            byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+
+            return verifyStream(document, signatureBytes, publicKey);
+        });
+    }
+
+    /**
+     * Verifies a document read by the streaming JSON reader: from its digest when
+     * the key type allows it, otherwise from the spooled document.
+     */
+    public boolean verifySignature(DigestedDocumentDto digestedDocumentDto) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.VERIFY, () -> {
+            try (digestedDocumentDto) {
+                PublicKey publicKey = getPublicKey(digestedDocumentDto.getNif());
+                byte[] signatureBytes = Base64.getDecoder().decode(digestedDocumentDto.getSignatureBase64());
+
+                boolean digestSigningSupported = KeyAlgorithm.fromKey(publicKey).isDigestSigningSupported();
+                if (!digestSigningSupported && digestedDocumentDto.getDocument() == null) {
+                    throw DigestSignatureUtil.unsupportedDigestSigning();
+                }
+                return verifyCached(digestedDocumentDto.getNif(), digestedDocumentDto.getDocumentDigest(),
+                        signatureBytes, publicKey, () -> {
+                    if (digestSigningSupported) {
+                        signatureMetrics.recordDocumentSize(SignatureMetrics.VERIFY, digestedDocumentDto.getDocumentSize());
+                        return signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_CRYPTO,
+                                () -> cryptoEngine.verifyDigest(digestedDocumentDto.getDocumentDigest(), signatureBytes, publicKey));
+                    }
+                    try (InputStream document = digestedDocumentDto.getDocument().openStream()) {
+                        return verifyStream(document, signatureBytes, publicKey);
+                    }
+                });
+            }
+        });
+    }
+
+    public boolean verifyDigest(String nif, byte[] documentDigest, String signatureBase64) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.VERIFY, () -> {
+            PublicKey publicKey = getPublicKey(nif);
+            byte[] signatureBytes = Base64.getDecoder().decode(signatureBase64);
+            if (!KeyAlgorithm.fromKey(publicKey).isDigestSigningSupported()) {
+                throw DigestSignatureUtil.unsupportedDigestSigning();
+            }
+
+            return verifyCached(nif, documentDigest, signatureBytes, publicKey,
+                    () -> signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_CRYPTO,
+                            () -> cryptoEngine.verifyDigest(documentDigest, signatureBytes, publicKey)));
+        });
+    }
+
+    /**
+     * Verifies a batch of signatures, resolving every distinct NIF's public key
+     * with a single set-based query (cached keys excluded) and checking the
+     * items in parallel. Results keep the input order.
+     */
+    public List<BatchVerifyResultDto> verifySignatures(List<VerifySignatureDto> verifySignatureDtos) {
+        Set<String> nifs = verifySignatureDtos.stream()
+                .map(VerifySignatureDto::getNif)
+                .filter(Objects::nonNull)
+                .collect(Collectors.toSet());
+        Map<String, PublicKey> publicKeys = signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_KEY_RESOLUTION,
+                () -> publicKeyCache.getAll(nifs, this::loadPublicKeys));
 
-        String publicKeyBase64 = userKeys.getPublicKey();
-        byte[] publicKeyBytes = Base64.getDecoder().decode(publicKeyBase64);
-        X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKeyBytes);
-        KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-        PublicKey publicKey = keyFactory.generatePublic(keySpec);
+        Set<String> missingNifs = new HashSet<>(nifs);
+        missingNifs.removeAll(publicKeys.keySet());
+        Set<String> existingUsers = missingNifs.isEmpty()
+                ? Set.of()
+                : new HashSet<>(userRepository.findNifsByNifIn(missingNifs));
 
-        byte[] documentBytes = Base64.getDecoder().decode(verifySignatureDto.getDocumentBase64());
-        byte[] signatureBytes = Base64.getDecoder().decode(verifySignatureDto.getSignatureBase64());
+        return IntStream.range(0, verifySignatureDtos.size())
+                .parallel()
+                .mapToObj(index -> verifyBatchItem(index, verifySignatureDtos.get(index), publicKeys, existingUsers))
+                .toList();
+    }
+
+    private BatchVerifyResultDto verifyBatchItem(int index, VerifySignatureDto verifySignatureDto,
+                                                 Map<String, PublicKey> publicKeys, Set<String> existingUsers) {
+        String nif = verifySignatureDto.getNif();
+        PublicKey publicKey = nif == null ? null : publicKeys.get(nif);
+        if (publicKey == null) {
+            String error = existingUsers.contains(nif)
+                    ? "User keys with nif " + nif + " have not been found"
+                    : "User with nif " + nif + " not found.";
+            return new BatchVerifyResultDto(index, nif, null, error);
+        }
+
+        try {
+            boolean valid = signatureMetrics.measure(SignatureMetrics.VERIFY, () -> {
+                byte[] documentBytes = Base64.getDecoder().decode(verifySignatureDto.getDocumentBase64());
+                byte[] signatureBytes = Base64.getDecoder().decode(verifySignatureDto.getSignatureBase64());
+
+                return verifyData(nif, documentBytes, signatureBytes, publicKey);
+            });
+            return new BatchVerifyResultDto(index, nif, valid, null);
+        } catch (Exception e) {
+            return new BatchVerifyResultDto(index, nif, null, "Error verifying signature. Error: " + e.getMessage());
+        }
+    }
+
+    private Map<String, PublicKey> loadPublicKeys(Set<? extends String> nifs) {
+        Map<String, PublicKey> publicKeys = new HashMap<>();
+        List<NifPublicKey> nifPublicKeys = signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_KEYS_LOOKUP,
+                () -> userKeysRepository.findPublicKeysByNifIn(nifs));
+        for (NifPublicKey nifPublicKey : nifPublicKeys) {
+            publicKeys.put(nifPublicKey.getNif(), parsePublicKey(nifPublicKey.getNif(),
+                    nifPublicKey.getPublicKey(), KeyAlgorithm.orDefault(nifPublicKey.getAlgorithm())));
+        }
+        return publicKeys;
+    }
+
+    public PublicKey getPublicKey(String nif) {
+        return signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_KEY_RESOLUTION,
+                () -> publicKeyCache.get(nif, this::loadPublicKey));
+    }
+
+    /**
+     * Fetches only the public key for the NIF in a single query; the user is
+     * looked up separately only to tell a missing user from missing keys.
+     */
+    private PublicKey loadPublicKey(String nif) {
+        NifPublicKey nifPublicKey = signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_KEYS_LOOKUP,
+                () -> userKeysRepository.findPublicKeyByNif(nif))
+                .orElseThrow(() -> keysNotFound(nif));
+
+        return parsePublicKey(nif, nifPublicKey.getPublicKey(), KeyAlgorithm.orDefault(nifPublicKey.getAlgorithm()));
+    }
 
-        Signature signature = Signature.getInstance("SHA256withRSA");
-        signature.initVerify(publicKey);
-        signature.update(documentBytes);
+    private RuntimeException keysNotFound(String nif) {
+        boolean userExists = signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_USER_LOOKUP,
+                () -> userService.existUserWithNif(nif));
+        return userExists
+                ? new UserKeysNotFoundException("No keys were found for the user with NIF: " + nif)
+                : new UserNotFoundException("User with NIF " + nif + " not found.");
+    }
+
+    private PublicKey parsePublicKey(String nif, byte[] publicKeyBytes, KeyAlgorithm keyAlgorithm) {
+        return signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_PARSE,
+                () -> generatePublicKey(nif, publicKeyBytes, keyAlgorithm));
+    }
+
+    private PublicKey generatePublicKey(String nif, byte[] publicKeyBytes, KeyAlgorithm keyAlgorithm) {
+        try {
+            return cryptoEngine.parsePublicKey(publicKeyBytes, keyAlgorithm);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Invalid public key stored for the user with NIF: " + nif, e);
+        }
+    }
+
+    private boolean verifyData(String nif, byte[] data, byte[] signatureBytes, PublicKey publicKey) throws Exception {
+        if (!verificationCache.isEnabled()) {
+            return verifyData(data, signatureBytes, publicKey);
+        }
+        return verifyCached(nif, DigestSignatureUtil.newDigest().digest(data), signatureBytes, publicKey,
+                () -> verifyData(data, signatureBytes, publicKey));
+    }
+
+    /**
+     * Returns the cached outcome of checking the signature of the digest with this
+     * public key, otherwise verifies and caches the outcome. Checks that throw are not cached.
+     */
+    private boolean verifyCached(String nif, byte[] documentDigest, byte[] signatureBytes, PublicKey publicKey,
+                                 SignatureMetrics.Stage<Boolean, Exception> verify) throws Exception {
+        if (!verificationCache.isEnabled()) {
+            return verify.call();
+        }
+        VerificationCache.Key key = verificationCache.key(nif, documentDigest, signatureBytes);
+        Boolean valid = verificationCache.get(key, publicKey);
+        if (valid == null) {
+            valid = verify.call();
+            verificationCache.put(key, publicKey, valid);
+        }
+        return valid;
+    }
+
+    private boolean verifyData(byte[] data, byte[] signatureBytes, PublicKey publicKey) throws Exception {
+        signatureMetrics.recordDocumentSize(SignatureMetrics.VERIFY, data.length);
+        return signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_CRYPTO,
+                () -> cryptoEngine.withSignature(publicKey, signature -> {
+                    signature.initVerify(publicKey);
+                    signature.update(data);
+                    return signature.verify(signatureBytes);
+                }));
+    }
 
-        return signature.verify(signatureBytes);
+    private boolean verifyStream(InputStream document, byte[] signatureBytes, PublicKey publicKey) throws Exception {
+        return signatureMetrics.time(SignatureMetrics.VERIFY, SignatureMetrics.STAGE_CRYPTO,
+                () -> cryptoEngine.withSignature(publicKey, signature -> {
+                    signature.initVerify(publicKey);
+                    signatureMetrics.recordDocumentSize(SignatureMetrics.VERIFY, StreamUtil.updateSignature(signature, document));
+                    return signature.verify(signatureBytes);
+                }));
     }
-}
\ No newline at end of file
+}
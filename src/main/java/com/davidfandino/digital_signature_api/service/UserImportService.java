@@ -0,0 +1,246 @@
+package com.davidfandino.digital_signature_api.service;
+
+import com.davidfandino.digital_signature_api.dto.UserDto;
+import com.davidfandino.digital_signature_api.dto.UserImportConflictDto;
+import com.davidfandino.digital_signature_api.dto.UserImportResultDto;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.*;
+
+/**
+ * Imports users from a CSV or NDJSON stream in chunks. NIFs repeated within a
+ * chunk are rejected in memory, existing ones, including those imported by an
+ * earlier chunk, with one query per chunk, and the remaining rows are inserted
+ * with a single JDBC batch per chunk. Memory is bounded by the chunk size
+ * whatever the size of the input.
+ */
+@Service
+public class UserImportService {
+
+    private static final String INSERT_USER =
+            "insert into signature_user (useruuid, first_name, last_name, nif, creation_date) values (?, ?, ?, ?, ?)";
+
+    private final UserRepository userRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final int chunkSize;
+
+    public UserImportService(UserRepository userRepository, JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate, ObjectMapper objectMapper,
+                             @Value("${app.user-import.chunk-size:1000}") int chunkSize) {
+        this.userRepository = userRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.objectMapper = objectMapper;
+        this.chunkSize = Math.max(chunkSize, 1);
+    }
+
+    public UserImportResultDto importNdjson(InputStream input) throws IOException {
+        Import userImport = new Import();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        long index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long rowIndex = index++;
+            try {
+                userImport.add(rowIndex, objectMapper.readValue(line, UserDto.class));
+            } catch (JsonProcessingException e) {
+                userImport.reject(rowIndex, null, "Malformed record: " + e.getOriginalMessage());
+            }
+        }
+        return userImport.finish();
+    }
+
+    /**
+     * The first line is a header naming the columns ({@code nif}, {@code firstName}
+     * and {@code lastName}, in any order). Fields may be quoted, but not span lines.
+     */
+    public UserImportResultDto importCsv(InputStream input) throws IOException {
+        Import userImport = new Import();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+
+        String header = reader.readLine();
+        if (header == null) {
+            return userImport.finish();
+        }
+        List<String> columns = parseCsvLine(header.startsWith("\uFEFF") ? header.substring(1) : header);
+        int nifColumn = columns.indexOf("nif");
+        int firstNameColumn = columns.indexOf("firstName");
+        int lastNameColumn = columns.indexOf("lastName");
+        if (nifColumn < 0) {
+            throw new IllegalArgumentException("The CSV header must contain a nif column.");
+        }
+
+        long index = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (line.isBlank()) {
+                continue;
+            }
+            long rowIndex = index++;
+            List<String> fields = parseCsvLine(line);
+            if (fields == null) {
+                userImport.reject(rowIndex, null, "Malformed record: unterminated quoted field.");
+                continue;
+            }
+            UserDto userDto = new UserDto();
+            userDto.setNif(field(fields, nifColumn));
+            userDto.setFirstName(field(fields, firstNameColumn));
+            userDto.setLastName(field(fields, lastNameColumn));
+            userImport.add(rowIndex, userDto);
+        }
+        return userImport.finish();
+    }
+
+    private static String field(List<String> fields, int column) {
+        return column >= 0 && column < fields.size() && !fields.get(column).isEmpty() ? fields.get(column) : null;
+    }
+
+    /**
+     * Splits an RFC 4180 line into its fields, or returns {@code null} if a quoted field is not closed.
+     */
+    private static List<String> parseCsvLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        if (quoted) {
+            return null;
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    private record Row(long index, UserDto user) {
+    }
+
+    /**
+     * State of one import: the pending chunk with its NIFs and the outcome.
+     */
+    private class Import {
+
+        private final Set<String> chunkNifs = new HashSet<>();
+        private final List<Row> chunk = new ArrayList<>(chunkSize);
+        private final List<UserImportConflictDto> conflicts = new ArrayList<>();
+        private long imported;
+
+        void add(long index, UserDto user) {
+            String nif = user.getNif();
+            if (nif == null || nif.isBlank()) {
+                reject(index, null, "The nif field is required.");
+            } else if (!chunkNifs.add(nif)) {
+                reject(index, nif, "User with NIF " + nif + " is repeated in the import");
+            } else {
+                chunk.add(new Row(index, user));
+                if (chunk.size() >= chunkSize) {
+                    flush();
+                }
+            }
+        }
+
+        void reject(long index, String nif, String error) {
+            conflicts.add(new UserImportConflictDto(index, nif, error));
+        }
+
+        UserImportResultDto finish() {
+            flush();
+            conflicts.sort(Comparator.comparingLong(UserImportConflictDto::getIndex));
+            return new UserImportResultDto(imported, conflicts.size(), conflicts);
+        }
+
+        private void flush() {
+            if (chunk.isEmpty()) {
+                return;
+            }
+            List<Row> newRows = withoutExistingUsers(chunk);
+            if (!newRows.isEmpty()) {
+                try {
+                    transactionTemplate.executeWithoutResult(status -> insert(newRows));
+                    imported += newRows.size();
+                } catch (DuplicateKeyException e) {
+                    // A NIF was created concurrently after the check: insert the chunk row by row
+                    for (Row row : withoutExistingUsers(newRows)) {
+                        try {
+                            insert(List.of(row));
+                            imported++;
+                        } catch (DuplicateKeyException rowException) {
+                            rejectExisting(row);
+                        }
+                    }
+                }
+            }
+            chunk.clear();
+            chunkNifs.clear();
+        }
+
+        private List<Row> withoutExistingUsers(List<Row> rows) {
+            Set<String> existingNifs = new HashSet<>(userRepository.findNifsByNifIn(
+                    rows.stream().map(row -> row.user().getNif()).toList()));
+            if (existingNifs.isEmpty()) {
+                return new ArrayList<>(rows);
+            }
+            List<Row> newRows = new ArrayList<>(rows.size() - existingNifs.size());
+            for (Row row : rows) {
+                if (existingNifs.contains(row.user().getNif())) {
+                    rejectExisting(row);
+                } else {
+                    newRows.add(row);
+                }
+            }
+            return newRows;
+        }
+
+        private void rejectExisting(Row row) {
+            reject(row.index(), row.user().getNif(), "User with NIF " + row.user().getNif() + " already exists");
+        }
+
+        private void insert(List<Row> rows) {
+            Timestamp creationDate = Timestamp.valueOf(LocalDateTime.now());
+            jdbcTemplate.batchUpdate(INSERT_USER, rows, rows.size(), (statement, row) -> {
+                statement.setObject(1, UUID.randomUUID());
+                statement.setString(2, row.user().getFirstName());
+                statement.setString(3, row.user().getLastName());
+                statement.setString(4, row.user().getNif());
+                statement.setTimestamp(5, creationDate);
+            });
+        }
+    }
+}
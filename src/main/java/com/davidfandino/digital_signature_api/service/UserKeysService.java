@@ -1,68 +1,102 @@
 package com.davidfandino.digital_signature_api.service;
 
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
 import com.davidfandino.digital_signature_api.exception.UserKeysAlreadyGeneratedException;
 import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.pool.KeyPairPool;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
-import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
-import javax.crypto.spec.SecretKeySpec;
 import java.security.KeyPair;
-import java.security.KeyPairGenerator;
-import java.security.NoSuchAlgorithmException;
-import java.util.Base64;
-import java.util.UUID;
+import java.security.GeneralSecurityException;
 
 @Service
 public class UserKeysService {
 
-    @Autowired
-    private final EncryptionUtil encryptionUtil;
-
+    private final CryptoEngine cryptoEngine;
     private final UserKeysRepository userKeysRepository;
     private final UserService userService;
+    private final KeyPairPool keyPairPool;
+    private final SignatureMetrics signatureMetrics;
 
-    @Value("${app.secret-key}")
-    public String secretKey;
-
-    public UserKeysService(EncryptionUtil encryptionUtil, UserKeysRepository userKeysRepository, UserService userService) throws Exception {
-        this.encryptionUtil = encryptionUtil;
+    public UserKeysService(CryptoEngine cryptoEngine, UserKeysRepository userKeysRepository, UserService userService, KeyPairPool keyPairPool,
+                           SignatureMetrics signatureMetrics) throws Exception {
+        this.cryptoEngine = cryptoEngine;
         this.userKeysRepository = userKeysRepository;
         this.userService = userService;
+        this.keyPairPool = keyPairPool;
+        this.signatureMetrics = signatureMetrics;
     }
 
     public UserKeys generateKeys(String nif) throws Exception {
-        try {
-            User user = userService.getUserByNif(nif);
+        return generateKeys(nif, KeyAlgorithm.RSA_2048);
+    }
 
-            if (userKeysRepository.existsByUser(user)) {
-                throw new UserKeysAlreadyGeneratedException("User with NIF: " + nif + " already has keys generated.");
-            }
+    public UserKeys generateKeys(String nif, KeyAlgorithm keyAlgorithm) throws Exception {
+        return signatureMetrics.measure(SignatureMetrics.KEYGEN, () -> {
+            try {
+                User user = findUserWithoutKeys(nif);
 
-            KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-            keyPairGenerator.initialize(2048);
-            KeyPair keyPair = keyPairGenerator.generateKeyPair();
+                KeyPair keyPair = signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_GENERATE,
+                        () -> keyAlgorithm == KeyAlgorithm.RSA_2048
+                                ? keyPairPool.acquire()
+                                : keyAlgorithm.generateKeyPair());
 
-            String publicKey = Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded());
-            String privateKey = Base64.getEncoder().encodeToString(keyPair.getPrivate().getEncoded());
+                UserKeys userKeys = encryptKeys(user, keyAlgorithm, keyPair);
+                return signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_PERSIST,
+                        () -> save(nif, user, userKeys));
 
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), EncryptionUtil.ALGORITHM);
-            String encryptedPrivateKey = encryptionUtil.encrypt(privateKey, secretKeySpec);
+            } catch (UserNotFoundException e) {
+                throw new UserNotFoundException("User not found with NIF: " + nif);
 
-            UserKeys userKeys = new UserKeys(UUID.randomUUID(), publicKey, encryptedPrivateKey, user);
-            return userKeysRepository.save(userKeys);
+            } catch (GeneralSecurityException e) {
+                throw new RuntimeException("Error generating keys", e);
+            }
+        });
+    }
 
-        } catch (UserNotFoundException e) {
-            throw new UserNotFoundException("User not found with NIF: " + nif);
+    /**
+     * Builds the keys of the user from the key pair, encrypting the private key with the master key.
+     */
+    public UserKeys encryptKeys(User user, KeyAlgorithm keyAlgorithm, KeyPair keyPair) throws Exception {
+        byte[] encryptedPrivateKey = signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_ENCRYPT,
+                () -> cryptoEngine.encrypt(keyPair.getPrivate().getEncoded(), user.getUserUUID()));
 
-        } catch (NoSuchAlgorithmException e) {
-            throw new RuntimeException("Error generating keys", e);
+        return new UserKeys(user.getUserUUID(), keyPair.getPublic().getEncoded(), encryptedPrivateKey, user, keyAlgorithm);
+    }
+
+    /**
+     * Saves the keys, reporting keys stored concurrently for the same user, between the
+     * check in {@link #findUserWithoutKeys} and this insert, as already generated.
+     */
+    private UserKeys save(String nif, User user, UserKeys userKeys) {
+        try {
+            return userKeysRepository.save(userKeys);
+        } catch (DataIntegrityViolationException e) {
+            if (userKeysRepository.existsByUser(user)) {
+                throw new UserKeysAlreadyGeneratedException("User with NIF: " + nif + " already has keys generated.");
+            }
+            throw e;
         }
     }
 
+    /**
+     * Returns the user with the given NIF, failing if it does not exist or already has keys.
+     */
+    public User findUserWithoutKeys(String nif) {
+        User user = signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_USER_LOOKUP,
+                () -> userService.getUserByNif(nif));
+
+        if (signatureMetrics.time(SignatureMetrics.KEYGEN, SignatureMetrics.STAGE_KEYS_LOOKUP,
+                () -> userKeysRepository.existsByUser(user))) {
+            throw new UserKeysAlreadyGeneratedException("User with NIF: " + nif + " already has keys generated.");
+        }
+        return user;
+    }
 
 }
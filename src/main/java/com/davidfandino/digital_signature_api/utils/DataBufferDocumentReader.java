@@ -0,0 +1,78 @@
+package com.davidfandino.digital_signature_api.utils;
+
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Reactive counterpart of {@link DigestedDocumentReader} for binary bodies: the
+ * buffers are hashed with SHA-256 as they arrive and released, so the document
+ * is never held in memory. It is additionally spooled only for keys that cannot
+ * sign a digest, in which case the buffers are consumed off the event loop, as
+ * the spool may write to a temporary file.
+ */
+public final class DataBufferDocumentReader {
+
+    private DataBufferDocumentReader() {
+    }
+
+    public static Mono<DigestedDocumentDto> read(Flux<DataBuffer> body, DigestedDocumentDto digestedDocumentDto,
+                                                 boolean spool, int spoolThreshold) {
+        return Mono.defer(() -> {
+            MessageDigest messageDigest = newDigest();
+            SpooledDocument document = spool ? new SpooledDocument(spoolThreshold) : null;
+            digestedDocumentDto.setDocument(document);
+            Flux<DataBuffer> buffers = spool ? body.publishOn(Schedulers.boundedElastic()) : body;
+            return buffers
+                    .reduce(0L, (size, buffer) -> {
+                        try {
+                            return size + update(buffer, messageDigest, document);
+                        } finally {
+                            DataBufferUtils.release(buffer);
+                        }
+                    })
+                    .map(size -> {
+                        digestedDocumentDto.setDocumentSize(size);
+                        digestedDocumentDto.setDocumentDigest(messageDigest.digest());
+                        return digestedDocumentDto;
+                    })
+                    .doOnError(e -> digestedDocumentDto.close())
+                    .doOnCancel(digestedDocumentDto::close);
+        });
+    }
+
+    private static int update(DataBuffer buffer, MessageDigest messageDigest, SpooledDocument document) {
+        int size = buffer.readableByteCount();
+        try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+            while (iterator.hasNext()) {
+                ByteBuffer byteBuffer = iterator.next();
+                if (document != null) {
+                    byte[] bytes = new byte[byteBuffer.remaining()];
+                    byteBuffer.duplicate().get(bytes);
+                    document.write(bytes, 0, bytes.length);
+                }
+                messageDigest.update(byteBuffer);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return size;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return DigestSignatureUtil.newDigest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
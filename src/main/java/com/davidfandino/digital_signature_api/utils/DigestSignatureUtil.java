@@ -0,0 +1,102 @@
+package com.davidfandino.digital_signature_api.utils;
+
+import com.davidfandino.digital_signature_api.exception.UnsupportedKeyOperationException;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.SignatureException;
+import java.security.interfaces.RSAKey;
+import java.util.Base64;
+
+/**
+ * Signatures over an already computed SHA-256 digest. For RSA keys the output is
+ * byte-identical to SHA256withRSA over the original document; for EC keys it
+ * verifies as SHA256withECDSA. Ed25519 needs the full document.
+ */
+public final class DigestSignatureUtil {
+
+    public static final String DIGEST_ALGORITHM = "SHA-256";
+    public static final int DIGEST_LENGTH = 32;
+
+    private static final byte[] SHA256_DIGEST_INFO_PREFIX = {
+            0x30, 0x31, 0x30, 0x0d, 0x06, 0x09, 0x60, (byte) 0x86, 0x48, 0x01, 0x65, 0x03, 0x04, 0x02, 0x01, 0x05, 0x00, 0x04, 0x20
+    };
+
+    private DigestSignatureUtil() {
+    }
+
+    public static MessageDigest newDigest() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    }
+
+    /**
+     * Decodes a client supplied Base64 SHA-256 digest, returning null when it is
+     * not valid Base64 or not exactly 32 bytes long.
+     */
+    public static byte[] decodeDigest(String digestBase64) {
+        if (digestBase64 == null) {
+            return null;
+        }
+        try {
+            byte[] digest = Base64.getDecoder().decode(digestBase64);
+            return digest.length == DIGEST_LENGTH ? digest : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Signs with a signature engine of {@link #digestSignatureAlgorithm} for the key.
+     */
+    public static byte[] sign(Signature signature, byte[] digest, PrivateKey privateKey) throws GeneralSecurityException {
+        signature.initSign(privateKey);
+        signature.update(toSignedData(digest, privateKey));
+        return signature.sign();
+    }
+
+    public static boolean verify(Signature signature, byte[] digest, byte[] signatureBytes, PublicKey publicKey)
+            throws GeneralSecurityException {
+        if (publicKey instanceof RSAKey rsaKey) {
+            int expectedLength = (rsaKey.getModulus().bitLength() + 7) / 8;
+            if (signatureBytes.length != expectedLength) {
+                throw new SignatureException("Bad signature length: got " + signatureBytes.length
+                        + " but was expecting " + expectedLength);
+            }
+        }
+        signature.initVerify(publicKey);
+        signature.update(toSignedData(digest, publicKey));
+        return signature.verify(signatureBytes);
+    }
+
+    public static String digestSignatureAlgorithm(KeyAlgorithm keyAlgorithm) {
+        return switch (keyAlgorithm) {
+            case RSA_2048 -> "NONEwithRSA";
+            case EC_P256 -> "NONEwithECDSA";
+            case ED25519 -> throw unsupportedDigestSigning();
+        };
+    }
+
+    public static UnsupportedKeyOperationException unsupportedDigestSigning() {
+        return new UnsupportedKeyOperationException(
+                "Ed25519 keys sign the full document and cannot sign a pre-computed digest.");
+    }
+
+    private static byte[] toSignedData(byte[] digest, Key key) {
+        if (digest == null || digest.length != DIGEST_LENGTH) {
+            throw new IllegalArgumentException("A SHA-256 digest must be " + DIGEST_LENGTH + " bytes long");
+        }
+        if (!(key instanceof RSAKey)) {
+            return digest;
+        }
+        byte[] digestInfo = new byte[SHA256_DIGEST_INFO_PREFIX.length + DIGEST_LENGTH];
+        System.arraycopy(SHA256_DIGEST_INFO_PREFIX, 0, digestInfo, 0, SHA256_DIGEST_INFO_PREFIX.length);
+        System.arraycopy(digest, 0, digestInfo, SHA256_DIGEST_INFO_PREFIX.length, DIGEST_LENGTH);
+        return digestInfo;
+    }
+}
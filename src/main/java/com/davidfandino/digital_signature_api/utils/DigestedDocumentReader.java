@@ -0,0 +1,90 @@
+package com.davidfandino.digital_signature_api.utils;
+
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+/**
+ * Reads a SignDocumentDto/VerifySignatureDto JSON object with a token stream,
+ * decoding documentBase64 chunk by chunk straight into a SHA-256 digest instead
+ * of materialising the Base64 String and decoded byte[]. The same object in CBOR
+ * may carry the document and signature as raw byte strings, under
+ * {@code document} and {@code signature}.
+ * <p>
+ * The decoded document is additionally spooled only when the key behind the NIF
+ * cannot sign a digest, or when the NIF has not been read yet and is unknown.
+ */
+public final class DigestedDocumentReader {
+
+    private DigestedDocumentReader() {
+    }
+
+    public static DigestedDocumentDto read(JsonParser parser, Predicate<String> requiresFullDocument,
+                                           int spoolThreshold) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "Expected a JSON object");
+        }
+        DigestedDocumentDto digestedDocumentDto = new DigestedDocumentDto();
+        try {
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.currentName();
+                JsonToken valueToken = parser.nextToken();
+                switch (fieldName) {
+                    case "nif" -> digestedDocumentDto.setNif(parser.getValueAsString());
+                    case "signatureBase64", "signature" -> digestedDocumentDto.setSignatureBase64(
+                            valueToken == JsonToken.VALUE_EMBEDDED_OBJECT
+                                    ? Base64.getEncoder().encodeToString(parser.getBinaryValue())
+                                    : parser.getValueAsString());
+                    case "documentBase64", "document" -> {
+                        if (valueToken == JsonToken.VALUE_STRING || valueToken == JsonToken.VALUE_EMBEDDED_OBJECT) {
+                            if (digestedDocumentDto.getDocumentDigest() != null) {
+                                throw new JsonParseException(parser, "The document field is repeated");
+                            }
+                            String nif = digestedDocumentDto.getNif();
+                            boolean spool = nif == null || requiresFullDocument.test(nif);
+                            SpooledDocument document = spool ? new SpooledDocument(spoolThreshold) : null;
+                            digestedDocumentDto.setDocument(document);
+                            MessageDigest messageDigest = newDigest();
+                            digestedDocumentDto.setDocumentSize(digestBinaryValue(parser, messageDigest, document));
+                            digestedDocumentDto.setDocumentDigest(messageDigest.digest());
+                        }
+                    }
+                    default -> parser.skipChildren();
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            digestedDocumentDto.close();
+            throw e;
+        }
+        return digestedDocumentDto;
+    }
+
+    /**
+     * Decodes the Base64 value into the digest (and the spool, if any) and returns
+     * the decoded document size.
+     */
+    private static int digestBinaryValue(JsonParser parser, MessageDigest messageDigest, OutputStream document) throws IOException {
+        OutputStream target = document != null ? document : OutputStream.nullOutputStream();
+        OutputStream digestStream = new DigestOutputStream(target, messageDigest);
+        int size = parser.readBinaryValue(digestStream);
+        digestStream.flush();
+        return size;
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return DigestSignatureUtil.newDigest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -14,6 +14,9 @@ public class EncryptionUtil {
 
     public static String ALGORITHM = "AES";
 
+    /**
+     * Legacy text format: Base64 of the encryption of the Base64-encoded key.
+     */
     public String encrypt(String data, SecretKey secretKey) throws Exception {
         Cipher cipher = Cipher.getInstance(ALGORITHM);
         cipher.init(Cipher.ENCRYPT_MODE, secretKey);
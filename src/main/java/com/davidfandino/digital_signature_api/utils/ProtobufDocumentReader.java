@@ -0,0 +1,161 @@
+package com.davidfandino.digital_signature_api.utils;
+
+import com.davidfandino.digital_signature_api.dto.DigestedDocumentDto;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.function.Predicate;
+
+/**
+ * Protobuf counterpart of {@link DigestedDocumentReader}, for sign and verify
+ * requests encoded as
+ * <pre>
+ * message SignatureRequest {
+ *   string nif = 1;
+ *   bytes document = 2;
+ *   bytes signature = 3;
+ * }
+ * </pre>
+ * The wire format is read by hand rather than through generated classes, so the
+ * document field is streamed into the SHA-256 digest (and the spool, if any)
+ * instead of being materialised. Encoders write fields in number order, so the
+ * NIF is normally known before the document.
+ */
+public final class ProtobufDocumentReader {
+
+    private static final int NIF_FIELD = 1;
+    private static final int DOCUMENT_FIELD = 2;
+    private static final int SIGNATURE_FIELD = 3;
+
+    private static final int WIRE_VARINT = 0;
+    private static final int WIRE_FIXED64 = 1;
+    private static final int WIRE_LENGTH_DELIMITED = 2;
+    private static final int WIRE_FIXED32 = 5;
+
+    private ProtobufDocumentReader() {
+    }
+
+    public static DigestedDocumentDto read(InputStream input, Predicate<String> requiresFullDocument,
+                                           int spoolThreshold) throws IOException {
+        DigestedDocumentDto digestedDocumentDto = new DigestedDocumentDto();
+        try {
+            long tag;
+            while ((tag = readVarint(input, true)) != -1) {
+                int fieldNumber = (int) (tag >>> 3);
+                int wireType = (int) (tag & 0x7);
+                if (fieldNumber == 0) {
+                    throw new IOException("Invalid field number 0");
+                }
+                if (fieldNumber >= NIF_FIELD && fieldNumber <= SIGNATURE_FIELD && wireType != WIRE_LENGTH_DELIMITED) {
+                    throw new IOException("Field " + fieldNumber + " must be length-delimited");
+                }
+                switch (fieldNumber) {
+                    case NIF_FIELD -> digestedDocumentDto.setNif(
+                            new String(readBytes(input, readLength(input)), StandardCharsets.UTF_8));
+                    case SIGNATURE_FIELD -> digestedDocumentDto.setSignatureBase64(
+                            Base64.getEncoder().encodeToString(readBytes(input, readLength(input))));
+                    case DOCUMENT_FIELD -> {
+                        if (digestedDocumentDto.getDocumentDigest() != null) {
+                            throw new IOException("The document field is repeated");
+                        }
+                        String nif = digestedDocumentDto.getNif();
+                        boolean spool = nif == null || requiresFullDocument.test(nif);
+                        SpooledDocument document = spool ? new SpooledDocument(spoolThreshold) : null;
+                        digestedDocumentDto.setDocument(document);
+                        MessageDigest messageDigest = newDigest();
+                        long size = readLength(input);
+                        digestBytes(input, size, messageDigest, document);
+                        digestedDocumentDto.setDocumentSize(size);
+                        digestedDocumentDto.setDocumentDigest(messageDigest.digest());
+                    }
+                    default -> skipField(input, wireType);
+                }
+            }
+        } catch (IOException | RuntimeException e) {
+            digestedDocumentDto.close();
+            throw e;
+        }
+        return digestedDocumentDto;
+    }
+
+    private static void digestBytes(InputStream input, long size, MessageDigest messageDigest,
+                                    OutputStream document) throws IOException {
+        byte[] buffer = new byte[StreamUtil.CHUNK_SIZE];
+        long remaining = size;
+        while (remaining > 0) {
+            int read = input.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1) {
+                throw new EOFException("Truncated document field");
+            }
+            messageDigest.update(buffer, 0, read);
+            if (document != null) {
+                document.write(buffer, 0, read);
+            }
+            remaining -= read;
+        }
+    }
+
+    private static void skipField(InputStream input, int wireType) throws IOException {
+        switch (wireType) {
+            case WIRE_VARINT -> readVarint(input, false);
+            case WIRE_FIXED64 -> input.skipNBytes(8);
+            case WIRE_LENGTH_DELIMITED -> input.skipNBytes(readLength(input));
+            case WIRE_FIXED32 -> input.skipNBytes(4);
+            default -> throw new IOException("Unsupported wire type " + wireType);
+        }
+    }
+
+    private static byte[] readBytes(InputStream input, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Field too long");
+        }
+        byte[] bytes = input.readNBytes((int) length);
+        if (bytes.length < length) {
+            throw new EOFException("Truncated field");
+        }
+        return bytes;
+    }
+
+    private static long readLength(InputStream input) throws IOException {
+        long length = readVarint(input, false);
+        if (length < 0) {
+            throw new IOException("Invalid field length");
+        }
+        return length;
+    }
+
+    /**
+     * Reads a base 128 varint, or returns -1 at the end of the stream when allowed.
+     */
+    private static long readVarint(InputStream input, boolean endAllowed) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = input.read();
+            if (b == -1) {
+                if (endAllowed && shift == 0) {
+                    return -1;
+                }
+                throw new EOFException("Truncated varint");
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return DigestSignatureUtil.newDigest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
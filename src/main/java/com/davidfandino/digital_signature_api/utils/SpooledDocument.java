@@ -0,0 +1,58 @@
+package com.davidfandino.digital_signature_api.utils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Decoded document bytes kept in memory up to a threshold and spilled to a
+ * temporary file beyond it, for key types that must see the whole document.
+ */
+public class SpooledDocument extends OutputStream {
+
+    private final int threshold;
+    private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+    private Path file;
+    private OutputStream fileOutput;
+
+    public SpooledDocument(int threshold) {
+        this.threshold = threshold;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (fileOutput == null && memory.size() + length > threshold) {
+            file = Files.createTempFile("document-", ".spool");
+            fileOutput = new BufferedOutputStream(Files.newOutputStream(file), StreamUtil.CHUNK_SIZE);
+            memory.writeTo(fileOutput);
+            memory = null;
+        }
+        if (fileOutput != null) {
+            fileOutput.write(bytes, offset, length);
+        } else {
+            memory.write(bytes, offset, length);
+        }
+    }
+
+    public InputStream openStream() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.flush();
+            return Files.newInputStream(file);
+        }
+        return new ByteArrayInputStream(memory.toByteArray());
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (fileOutput != null) {
+            fileOutput.close();
+            Files.deleteIfExists(file);
+            fileOutput = null;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.davidfandino.digital_signature_api.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.Signature;
+import java.security.SignatureException;
+
+public final class StreamUtil {
+
+    public static final int CHUNK_SIZE = 64 * 1024;
+
+    private StreamUtil() {
+    }
+
+    /**
+     * Feeds the whole stream into the signature engine in fixed-size chunks, so
+     * memory use does not depend on the document size.
+     */
+    public static long updateSignature(Signature signature, InputStream inputStream) throws IOException, SignatureException {
+        byte[] buffer = new byte[CHUNK_SIZE];
+        long total = 0;
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            signature.update(buffer, 0, read);
+            total += read;
+        }
+        return total;
+    }
+}
@@ -0,0 +1,28 @@
+package com.davidfandino.digital_signature_api.integrationTest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.hamcrest.Matchers.hasItems;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+public class CacheTest {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    public void testCacheStats() throws Exception {
+        mockMvc.perform(get("/api/cache/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].name", hasItems("privateKeys", "publicKeys", "signatures", "verifications")))
+                .andExpect(jsonPath("$[0].hitRatio").exists());
+    }
+}
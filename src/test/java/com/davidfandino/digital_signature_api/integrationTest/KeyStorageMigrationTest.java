@@ -0,0 +1,149 @@
+package com.davidfandino.digital_signature_api.integrationTest;
+
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.User;
+import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
+import com.davidfandino.digital_signature_api.repository.UserKeysStorageMigration;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.davidfandino.digital_signature_api.service.SignService;
+import com.davidfandino.digital_signature_api.service.SignatureVerificationService;
+import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.crypto.spec.SecretKeySpec;
+import java.security.KeyPair;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest
+public class KeyStorageMigrationTest {
+
+    @Autowired
+    private UserKeysStorageMigration userKeysStorageMigration;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+
+    @Autowired
+    private SignService signService;
+
+    @Autowired
+    private SignatureVerificationService signatureVerificationService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private UserKeysRepository userKeysRepository;
+
+    @Value("${app.secret-key}")
+    private String secretKey;
+
+    @BeforeEach
+    public void setup() {
+        userKeysRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testLegacyTextKeysAreConvertedToBinary() throws Exception {
+        User user = createUser("12345678A");
+        KeyPair keyPair = KeyAlgorithm.RSA_2048.generateKeyPair();
+        createLegacyTable();
+        insertLegacyKeys(user, Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+                legacyEncrypt(keyPair.getPrivate().getEncoded()));
+
+        assertEquals(1, userKeysStorageMigration.migrate());
+
+        assertEquals(0, jdbcTemplate.queryForObject("select count(*) from information_schema.columns "
+                + "where lower(table_name) = 'user_keys' and lower(column_name) in ('public_key', 'private_key', 'user_keyuuid')",
+                Integer.class));
+        assertEquals("USER_UUID", jdbcTemplate.queryForObject("select upper(column_name) from information_schema.key_column_usage "
+                + "where lower(table_name) = 'user_keys' and upper(constraint_name) in (select upper(constraint_name) "
+                + "from information_schema.table_constraints where lower(table_name) = 'user_keys' "
+                + "and constraint_type = 'PRIMARY KEY')", String.class));
+        assertArrayEquals(keyPair.getPublic().getEncoded(),
+                userKeysRepository.findPublicKeyByNif(user.getNif()).orElseThrow().getPublicKey());
+        assertEquals(KeyAlgorithm.RSA_2048, userKeysRepository.findPublicKeyByNif(user.getNif()).orElseThrow().getAlgorithm());
+
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(user.getNif());
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString("Test document".getBytes()));
+        String signatureBase64 = signService.signDocument(signDocumentDto);
+
+        assertTrue(signatureVerificationService.verifySignature(
+                new VerifySignatureDto(signDocumentDto.getDocumentBase64(), signatureBase64, user.getNif())));
+    }
+
+    @Test
+    public void testLegacyKeysThatCannotBeConvertedRefuseTheMigration() throws Exception {
+        User user = createUser("12345678A");
+        User corrupted = createUser("87654321B");
+        KeyPair keyPair = KeyAlgorithm.RSA_2048.generateKeyPair();
+        createLegacyTable();
+        insertLegacyKeys(user, Base64.getEncoder().encodeToString(keyPair.getPublic().getEncoded()),
+                legacyEncrypt(keyPair.getPrivate().getEncoded()));
+        insertLegacyKeys(corrupted, "not Base64", "not encrypted");
+
+        assertThrows(IllegalStateException.class, () -> userKeysStorageMigration.migrate());
+        assertEquals(2, jdbcTemplate.queryForObject("select count(*) from information_schema.columns "
+                + "where lower(table_name) = 'user_keys' and lower(column_name) in ('public_key', 'private_key')", Integer.class));
+
+        // Once the failed row is deleted, the conversion resumes
+        jdbcTemplate.update("delete from user_keys where user_uuid = ?", corrupted.getUserUUID());
+        assertEquals(0, userKeysStorageMigration.migrate());
+        assertArrayEquals(keyPair.getPublic().getEncoded(),
+                userKeysRepository.findPublicKeyByNif(user.getNif()).orElseThrow().getPublicKey());
+    }
+
+    private User createUser(String nif) {
+        User user = new User();
+        user.setNif(nif);
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setCreationDate(LocalDateTime.now());
+        return userRepository.save(user);
+    }
+
+    /**
+     * Recreates user_keys as the first release created it, plus the columns that
+     * Hibernate's schema update adds to it on startup.
+     */
+    private void createLegacyTable() {
+        jdbcTemplate.execute("drop table user_keys");
+        jdbcTemplate.execute("create table user_keys (user_keyuuid uuid not null, private_key clob, public_key clob, "
+                + "user_uuid uuid not null, primary key (user_keyuuid))");
+        jdbcTemplate.execute("alter table user_keys add constraint uk_user_keys_user unique (user_uuid)");
+        jdbcTemplate.execute("alter table user_keys add constraint fk_user_keys_user foreign key (user_uuid) "
+                + "references signature_user");
+        jdbcTemplate.execute("alter table user_keys add column algorithm varchar(255)");
+        jdbcTemplate.execute("alter table user_keys add column encrypted_private_key varbinary(4096)");
+        jdbcTemplate.execute("alter table user_keys add column public_key_der varbinary(1024)");
+    }
+
+    private void insertLegacyKeys(User user, String publicKey, String privateKey) {
+        jdbcTemplate.update("insert into user_keys (user_keyuuid, public_key, private_key, user_uuid) values (?, ?, ?, ?)",
+                UUID.randomUUID(), publicKey, privateKey, user.getUserUUID());
+    }
+
+    private String legacyEncrypt(byte[] privateKey) throws Exception {
+        SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), EncryptionUtil.ALGORITHM);
+        return encryptionUtil.encrypt(Base64.getEncoder().encodeToString(privateKey), secretKeySpec);
+    }
+}
@@ -0,0 +1,66 @@
+package com.davidfandino.digital_signature_api.integrationTest;
+
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.UserDto;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
+import com.davidfandino.digital_signature_api.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.actuate.observability.AutoConfigureObservability;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Base64;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest
+@AutoConfigureMockMvc
+@AutoConfigureObservability
+public class MetricsTest {
+
+    private static final String NIF = "METRICS01";
+
+    @Autowired
+    private MockMvc mockMvc;
+    @Autowired
+    private UserService userService;
+    @Autowired
+    private UserKeysService userKeysService;
+
+    @Test
+    public void testPrometheusExposesSignMetrics() throws Exception {
+        if (!userService.existUserWithNif(NIF)) {
+            UserDto userDto = new UserDto();
+            userDto.setFirstName("Metrics");
+            userDto.setLastName("Test");
+            userDto.setNif(NIF);
+            userService.createUser(userDto);
+            userKeysService.generateKeys(NIF);
+        }
+
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(NIF);
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString("metrics".getBytes()));
+
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(signDocumentDto)))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isOk())
+                .andExpect(content().string(containsString("signature_stage_seconds_bucket{")))
+                .andExpect(content().string(containsString("signature_stage_seconds_count{operation=\"sign\",stage=\"crypto\"}")))
+                .andExpect(content().string(containsString("signature_document_size_bytes_count{operation=\"sign\"}")))
+                .andExpect(content().string(containsString("signature_outcome_total{operation=\"sign\",outcome=\"success\"}")))
+                .andExpect(content().string(containsString("operation=\"keygen\"")));
+    }
+}
@@ -0,0 +1,158 @@
+package com.davidfandino.digital_signature_api.integrationTest;
+
+import com.davidfandino.digital_signature_api.controller.SignatureVerificationController;
+import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.VerifyDigestDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.User;
+import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.davidfandino.digital_signature_api.service.SignService;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.reactive.AutoConfigureWebTestClient;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "spring.main.web-application-type=reactive")
+@AutoConfigureWebTestClient
+public class ReactiveSignatureTest {
+
+    private static final String NIF = "12345678A";
+    private static final byte[] DOCUMENT = "Document to sign".getBytes();
+
+    @Autowired
+    private WebTestClient webTestClient;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private UserKeysRepository userKeysRepository;
+    @Autowired
+    private UserKeysService userKeysService;
+    @Autowired
+    private SignService signService;
+
+    @BeforeEach
+    public void setup() {
+        userKeysRepository.deleteAll();
+        userRepository.deleteAll();
+    }
+
+    @Test
+    public void testSignDocumentStreamMatchesServletSignature() throws Exception {
+        createUser();
+        userKeysService.generateKeys(NIF, KeyAlgorithm.RSA_2048);
+
+        String signatureBase64 = signStream();
+
+        assertEquals(signService.signDocument(signDocumentDto()), signatureBase64);
+        webTestClient.post().uri("/api/signature/verify/{nif}", NIF)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(SignatureVerificationController.SIGNATURE_HEADER, signatureBase64)
+                .bodyValue(DOCUMENT)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Boolean.class).isEqualTo(true);
+    }
+
+    @Test
+    public void testSignDocumentStreamWithKeyRequiringFullDocument() throws Exception {
+        createUser();
+        userKeysService.generateKeys(NIF, KeyAlgorithm.ED25519);
+
+        String signatureBase64 = signStream();
+
+        assertEquals(signService.signDocument(signDocumentDto()), signatureBase64);
+        webTestClient.post().uri("/api/signature/verify/{nif}", NIF)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(SignatureVerificationController.SIGNATURE_HEADER, signatureBase64)
+                .bodyValue("Another document".getBytes())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Boolean.class).isEqualTo(false);
+    }
+
+    @Test
+    public void testSignAndVerifyJsonAndDigest() throws Exception {
+        createUser();
+        userKeysService.generateKeys(NIF, KeyAlgorithm.EC_P256);
+
+        String signatureBase64 = webTestClient.post().uri("/api/sign")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(signDocumentDto())
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+
+        VerifyDigestDto verifyDigestDto = new VerifyDigestDto();
+        verifyDigestDto.setNif(NIF);
+        verifyDigestDto.setDigestBase64(Base64.getEncoder().encodeToString(
+                MessageDigest.getInstance("SHA-256").digest(DOCUMENT)));
+        verifyDigestDto.setSignatureBase64(signatureBase64);
+        webTestClient.post().uri("/api/signature/verify/digest")
+                .contentType(MediaType.APPLICATION_JSON)
+                .bodyValue(verifyDigestDto)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Boolean.class).isEqualTo(true);
+    }
+
+    @Test
+    public void testSignDocumentStreamUserNotFound() {
+        webTestClient.post().uri("/api/sign/{nif}", NIF)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .bodyValue(DOCUMENT)
+                .exchange()
+                .expectStatus().isNotFound()
+                .expectBody(String.class).isEqualTo("User with nif " + NIF + " not found.");
+    }
+
+    @Test
+    public void testGenerateKeys() {
+        createUser();
+
+        webTestClient.post().uri("/api/userkeys/generate-keys/{nif}?algorithm=EC_P256", NIF)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).isEqualTo("Keys generated for user: " + NIF);
+        webTestClient.post().uri("/api/userkeys/generate-keys/{nif}", NIF)
+                .exchange()
+                .expectStatus().isEqualTo(409);
+        assertTrue(userKeysRepository.findPublicKeyByNif(NIF).isPresent());
+    }
+
+    private String signStream() {
+        return webTestClient.post().uri("/api/sign/{nif}", NIF)
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .bodyValue(DOCUMENT)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class).returnResult().getResponseBody();
+    }
+
+    private void createUser() {
+        User user = new User();
+        user.setNif(NIF);
+        user.setFirstName("John");
+        user.setLastName("Doe");
+        user.setCreationDate(LocalDateTime.now());
+        userRepository.save(user);
+    }
+
+    private SignDocumentDto signDocumentDto() {
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(NIF);
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString(DOCUMENT));
+        return signDocumentDto;
+    }
+}
@@ -1,13 +1,21 @@
 package com.davidfandino.digital_signature_api.integrationTest;
 
+import com.davidfandino.digital_signature_api.cache.PrivateKeyCache;
+import com.davidfandino.digital_signature_api.dto.SignDigestDto;
 import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
 import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.davidfandino.digital_signature_api.service.KeyAlgorithmService;
 import com.davidfandino.digital_signature_api.service.SignService;
 import com.davidfandino.digital_signature_api.service.UserKeysService;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,9 +25,18 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.web.context.WebApplicationContext;
 
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
 import java.time.LocalDateTime;
 import java.util.Base64;
+import java.util.List;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -36,6 +53,14 @@ public class SignTest {
     private UserKeysRepository userKeysRepository;
     @Autowired
     private UserKeysService userKeysService;
+    @Autowired
+    private SignService signService;
+    @Autowired
+    private MeterRegistry meterRegistry;
+    @Autowired
+    private KeyAlgorithmService keyAlgorithmService;
+    @Autowired
+    private PrivateKeyCache privateKeyCache;
 
     @BeforeEach
     public void setup() {
@@ -57,6 +82,40 @@ public class SignTest {
                 .andExpect(content().string(org.hamcrest.Matchers.notNullValue()));
     }
 
+    @Test
+    public void testSignDocumentMatchesSha256WithRsaRegardlessOfFieldOrder() throws Exception {
+        UserKeys userKeys = createBaseUserAndGenerateKeys();
+        SignDocumentDto signDocumentDto = generateSignDocumentDto(userKeys);
+
+        String signDocumentJson = "{\"documentBase64\":\"" + signDocumentDto.getDocumentBase64()
+                + "\",\"extra\":{\"ignored\":[1,2]},\"nif\":\"" + signDocumentDto.getNif() + "\"}";
+
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(signDocumentJson))
+                .andExpect(status().isOk())
+                .andExpect(content().string(signService.signDocument(signDocumentDto)));
+    }
+
+    @Test
+    public void testSignDocumentMalformedJson() throws Exception {
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nif\":\"12345678A\",\"documentBase64\":\"@@@\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSignDocumentRepeatedDocumentField() throws Exception {
+        String documentBase64 = Base64.getEncoder().encodeToString("Document to sign".getBytes());
+
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"documentBase64\":\"" + documentBase64 + "\",\"document\":\"" + documentBase64
+                                + "\",\"nif\":\"12345678A\"}"))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     public void testSignDocumentUserNotFound() throws Exception {
         SignDocumentDto signDocumentDto = generateSignDocumentDtoByNif("fakeNif");
@@ -86,6 +145,133 @@ public class SignTest {
                         + signDocumentDto.getNif() + " have not been found"));
     }
 
+    @Test
+    public void testSignDocumentStreamSuccess() throws Exception {
+        UserKeys userKeys = createBaseUserAndGenerateKeys();
+        SignDocumentDto signDocumentDto = generateSignDocumentDto(userKeys);
+
+        mockMvc.perform(post("/api/sign/" + signDocumentDto.getNif())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content(Base64.getDecoder().decode(signDocumentDto.getDocumentBase64())))
+                .andExpect(status().isOk())
+                .andExpect(content().string(signService.signDocument(signDocumentDto)));
+    }
+
+    @Test
+    public void testSignDocumentStreamUserNotFound() throws Exception {
+        mockMvc.perform(post("/api/sign/fakeNif")
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .content("Document to sign".getBytes()))
+                .andExpect(status().isNotFound())
+                .andExpect(content().string("User with nif fakeNif not found."));
+    }
+
+    @Test
+    public void testSignDocumentsBulkKeepsInputOrderAndReportsPerRecordErrors() throws Exception {
+        UserKeys userKeys = createBaseUserAndGenerateKeys();
+        SignDocumentDto signDocumentDto = generateSignDocumentDto(userKeys);
+        String expectedSignature = signService.signDocument(signDocumentDto);
+        String record = new ObjectMapper().writeValueAsString(signDocumentDto);
+
+        StringBuilder records = new StringBuilder();
+        for (int i = 0; i < 20; i++) {
+            records.append(record).append('\n');
+        }
+        records.append(new ObjectMapper().writeValueAsString(generateSignDocumentDtoByNif("fakeNif"))).append('\n');
+        records.append("{not json\n");
+        records.append(record).append('\n');
+
+        String response = mockMvc.perform(post("/api/sign/bulk")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(records.toString()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON))
+                .andReturn().getResponse().getContentAsString();
+
+        List<JsonNode> results = response.lines().map(this::readTree).toList();
+        assertEquals(23, results.size());
+        for (int i = 0; i < results.size(); i++) {
+            assertEquals(i, results.get(i).get("index").asInt());
+        }
+        for (int i : new int[]{0, 19, 22}) {
+            assertEquals(expectedSignature, results.get(i).get("signatureBase64").asText());
+        }
+        assertEquals("User with nif fakeNif not found.", results.get(20).get("error").asText());
+        assertTrue(results.get(21).get("error").asText().startsWith("Malformed record"));
+    }
+
+    @Test
+    public void testSignDigestMatchesDocumentSignature() throws Exception {
+        UserKeys userKeys = createBaseUserAndGenerateKeys();
+        SignDocumentDto signDocumentDto = generateSignDocumentDto(userKeys);
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(Base64.getDecoder().decode(signDocumentDto.getDocumentBase64()));
+
+        SignDigestDto signDigestDto = new SignDigestDto(Base64.getEncoder().encodeToString(digest), signDocumentDto.getNif());
+
+        mockMvc.perform(post("/api/sign/digest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(signDigestDto)))
+                .andExpect(status().isOk())
+                .andExpect(content().string(signService.signDocument(signDocumentDto)));
+    }
+
+    @Test
+    public void testSignDigestInvalidLength() throws Exception {
+        SignDigestDto signDigestDto = new SignDigestDto(Base64.getEncoder().encodeToString(new byte[20]), "12345678A");
+
+        mockMvc.perform(post("/api/sign/digest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(signDigestDto)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testSignDocumentAfterKeysRegenerated() throws Exception {
+        UserKeys oldUserKeys = createBaseUserAndGenerateKeys();
+        SignDocumentDto signDocumentDto = generateSignDocumentDto(oldUserKeys);
+        signService.signDocument(signDocumentDto);
+
+        cleanRepositories();
+        UserKeys newUserKeys = createBaseUserAndGenerateKeys();
+
+        String signatureBase64 = signService.signDocument(signDocumentDto);
+
+        PublicKey publicKey = KeyFactory.getInstance("RSA")
+                .generatePublic(new X509EncodedKeySpec(newUserKeys.getPublicKey()));
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(publicKey);
+        signature.update(Base64.getDecoder().decode(signDocumentDto.getDocumentBase64()));
+
+        assertTrue(signature.verify(Base64.getDecoder().decode(signatureBase64)));
+    }
+
+    @Test
+    public void testSignDocumentWithColdKeyLoadsTheKeyOnce() throws Exception {
+        User user = createBaseUserInBBDD();
+        userKeysService.generateKeys(user.getNif(), KeyAlgorithm.ED25519);
+        Timer keysLookup = meterRegistry.timer(SignatureMetrics.STAGE_TIMER,
+                "operation", SignatureMetrics.SIGN, "stage", SignatureMetrics.STAGE_KEYS_LOOKUP);
+        long keysLookups = keysLookup.count();
+
+        assertTrue(keyAlgorithmService.requiresFullDocumentToSign(user.getNif()));
+        assertNotNull(privateKeyCache.getIfPresent(user.getNif()));
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(generateSignDocumentDtoByNif(user.getNif()))))
+                .andExpect(status().isOk());
+
+        assertEquals(keysLookups + 1, keysLookup.count());
+    }
+
+    private JsonNode readTree(String json) {
+        try {
+            return new ObjectMapper().readTree(json);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     private void cleanRepositories() {
         userKeysRepository.deleteAll();
         userRepository.deleteAll();
@@ -1,8 +1,13 @@
 package com.davidfandino.digital_signature_api.integrationTest;
 
+import com.davidfandino.digital_signature_api.exception.UserKeysAlreadyGeneratedException;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
 import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -12,9 +17,20 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -30,6 +46,9 @@ public class UserKeysTest {
     @Autowired
     private UserKeysRepository userKeysRepository;
 
+    @Autowired
+    private UserKeysService userKeysService;
+
     @BeforeEach
     public void setup() {
         cleanRepositories();
@@ -57,6 +76,41 @@ public class UserKeysTest {
                 .andExpect(status().isNotFound());
     }
 
+    @Test
+    public void testGenerateKeysConcurrentRequestsConflict() throws Exception {
+        User user = createBaseUser();
+        userRepository.save(user);
+
+        // Called on the service, as admission control would shed part of concurrent HTTP requests
+        String nif = user.getNif();
+        int requests = 8;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(requests);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int i = 0; i < requests; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return userKeysService.generateKeys(nif, KeyAlgorithm.EC_P256);
+                }));
+            }
+            start.countDown();
+
+            int generated = 0;
+            for (Future<?> result : results) {
+                try {
+                    result.get(30, TimeUnit.SECONDS);
+                    generated++;
+                } catch (ExecutionException e) {
+                    assertInstanceOf(UserKeysAlreadyGeneratedException.class, e.getCause());
+                }
+            }
+            assertEquals(1, generated);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     @Test
     public void testGenerateKeysAlreadyGenerated() throws Exception {
         User user = createBaseUser();
@@ -74,6 +128,119 @@ public class UserKeysTest {
                 .andExpect(content().string("User with NIF: " + nif + " already has keys generated.")); // Verifica el mensaje
     }
 
+    @Test
+    public void testGenerateKeysAsyncSuccess() throws Exception {
+        User user = createBaseUser();
+        userRepository.save(user);
+
+        String nif = user.getNif();
+
+        String response = mockMvc.perform(post("/api/userkeys/generate-keys/" + nif + "/async")
+                        .param("algorithm", "EC_P256"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().exists("Location"))
+                .andExpect(jsonPath("$.nif").value(nif))
+                .andExpect(jsonPath("$.algorithm").value("EC_P256"))
+                .andReturn().getResponse().getContentAsString();
+        String jobId = new ObjectMapper().readTree(response).get("jobId").asText();
+
+        JsonNode job = waitForJob("/api/userkeys/jobs/" + jobId);
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertTrue(job.hasNonNull("completionDate"));
+        assertTrue(userKeysRepository.existsByUser(userRepository.getUserByNif(nif).orElseThrow()));
+
+        mockMvc.perform(post("/api/userkeys/generate-keys/" + nif + "/async"))
+                .andExpect(status().isConflict());
+    }
+
+    @Test
+    public void testGenerateKeysAsyncUserNotFound() throws Exception {
+        mockMvc.perform(post("/api/userkeys/generate-keys/fakeNif/async"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testKeyGenerationJobNotFound() throws Exception {
+        mockMvc.perform(get("/api/userkeys/jobs/00000000-0000-0000-0000-000000000000"))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    public void testGenerateKeysBulkForAllUsersWithoutKeys() throws Exception {
+        for (int i = 0; i < 5; i++) {
+            User user = createBaseUser();
+            user.setNif("1000000" + i + "A");
+            userRepository.save(user);
+        }
+        // Users without a NIF can not be signed for, and are neither counted nor given keys
+        User withoutNif = createBaseUser();
+        withoutNif.setNif(null);
+        userRepository.save(withoutNif);
+        mockMvc.perform(post("/api/userkeys/generate-keys/10000000A"))
+                .andExpect(status().isOk());
+
+        String location = mockMvc.perform(post("/api/userkeys/generate-keys/bulk")
+                        .param("algorithm", "EC_P256"))
+                .andExpect(status().isAccepted())
+                .andExpect(jsonPath("$.algorithm").value("EC_P256"))
+                .andReturn().getResponse().getHeader("Location");
+
+        JsonNode job = waitForJob(location);
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(4, job.get("total").asLong());
+        assertEquals(4, job.get("processed").asLong());
+        assertEquals(4, job.get("generated").asLong());
+        assertEquals(5, userKeysRepository.count());
+
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"nif\": \"10000004A\", \"documentBase64\": \"SGVsbG8=\"}"))
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testGenerateKeysBulkForNifs() throws Exception {
+        User user = createBaseUser();
+        userRepository.save(user);
+
+        String location = mockMvc.perform(post("/api/userkeys/generate-keys/bulk")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("[\"12345678A\", \"fakeNif\", \"12345678A\"]"))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getHeader("Location");
+
+        JsonNode job = waitForJob(location);
+        assertEquals("COMPLETED", job.get("status").asText());
+        assertEquals(2, job.get("total").asLong());
+        assertEquals(1, job.get("generated").asLong());
+        assertEquals(1, job.get("skipped").asLong());
+        assertTrue(userKeysRepository.existsByUser(userRepository.getUserByNif("12345678A").orElseThrow()));
+    }
+
+    @Test
+    public void testKeyPairPoolStats() throws Exception {
+        mockMvc.perform(get("/api/userkeys/pool/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.capacity").value(32))
+                .andExpect(jsonPath("$.depth").exists())
+                .andExpect(jsonPath("$.refillRatePerSecond").exists());
+    }
+
+    private JsonNode waitForJob(String jobUrl) throws Exception {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (true) {
+            String response = mockMvc.perform(get(jobUrl))
+                    .andExpect(status().isOk())
+                    .andReturn().getResponse().getContentAsString();
+            JsonNode job = new ObjectMapper().readTree(response);
+            String status = job.get("status").asText();
+            if (status.equals("COMPLETED") || status.equals("FAILED") || System.currentTimeMillis() > deadline) {
+                return job;
+            }
+            Thread.sleep(20);
+        }
+    }
+
     private void cleanRepositories() {
         userKeysRepository.deleteAll();
         userRepository.deleteAll();
@@ -2,6 +2,7 @@ package com.davidfandino.digital_signature_api.integrationTest;
 
 import com.davidfandino.digital_signature_api.dto.UserDto;
 import com.davidfandino.digital_signature_api.model.User;
+import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
 import com.davidfandino.digital_signature_api.repository.UserRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
@@ -15,9 +16,15 @@ import org.springframework.test.web.servlet.setup.MockMvcBuilders;
 import org.springframework.web.context.WebApplicationContext;
 
 import java.time.LocalDateTime;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
@@ -34,6 +41,8 @@ public class UserTest {
     private ObjectMapper objectMapper;
     @Autowired
     private UserRepository userRepository;
+    @Autowired
+    private UserKeysRepository userKeysRepository;
 
     @BeforeEach
     public void setup() {
@@ -75,8 +84,69 @@ public class UserTest {
                 .andExpect(content().string("User with NIF " + userDto.getNif() + " already exists")); // Verifica el mensaje de error
     }
 
+    @Test
+    public void testImportUsersNdjsonReportsConflicts() throws Exception {
+        saveBaseUserInBBDD();
+
+        String users = """
+                {"nif": "11111111A", "firstName": "Jane", "lastName": "Roe"}
+                {"nif": "12345678A", "firstName": "John", "lastName": "Doe"}
+                {"nif": "11111111A", "firstName": "Jane", "lastName": "Again"}
+                {"firstName": "No", "lastName": "Nif"}
+                {"nif": 
+                {"nif": "22222222B", "firstName": "Max", "lastName": "Mustermann"}
+                """;
+
+        mockMvc.perform(post("/api/user/import")
+                        .contentType(MediaType.APPLICATION_NDJSON)
+                        .content(users))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2))
+                .andExpect(jsonPath("$.rejected").value(4))
+                .andExpect(jsonPath("$.conflicts[0].index").value(1))
+                .andExpect(jsonPath("$.conflicts[0].error").value("User with NIF 12345678A already exists"))
+                .andExpect(jsonPath("$.conflicts[1].index").value(2))
+                .andExpect(jsonPath("$.conflicts[1].error").value("User with NIF 11111111A is repeated in the import"))
+                .andExpect(jsonPath("$.conflicts[2].error").value("The nif field is required."))
+                .andExpect(jsonPath("$.conflicts[3].index").value(4));
+
+        assertEquals("Roe", userRepository.getUserByNif("11111111A").orElseThrow().getLastName());
+        assertTrue(userRepository.existsByNif("22222222B"));
+    }
+
+    @Test
+    public void testImportUsersCsvAcrossChunks() throws Exception {
+        saveBaseUserInBBDD();
+
+        String users = "lastName,nif,firstName\n" + IntStream.range(0, 2500)
+                .mapToObj(i -> "\"Doe, Jr.\"," + String.format("%08dX", i) + ",John")
+                .collect(Collectors.joining("\n")) + "\nDoe,12345678A,John\nDoe,00000000X,John\n";
+
+        mockMvc.perform(post("/api/user/import")
+                        .contentType("text/csv")
+                        .content(users))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.imported").value(2500))
+                .andExpect(jsonPath("$.rejected").value(2))
+                .andExpect(jsonPath("$.conflicts[0].index").value(2500))
+                .andExpect(jsonPath("$.conflicts[1].index").value(2501))
+                .andExpect(jsonPath("$.conflicts[1].error").value("User with NIF 00000000X already exists"));
+
+        assertEquals(2501, userRepository.count());
+        assertEquals("Doe, Jr.", userRepository.getUserByNif("00002499X").orElseThrow().getLastName());
+    }
+
+    @Test
+    public void testImportUsersCsvWithoutNifColumn() throws Exception {
+        mockMvc.perform(post("/api/user/import")
+                        .contentType("text/csv")
+                        .content("firstName,lastName\nJohn,Doe\n"))
+                .andExpect(status().isBadRequest());
+    }
+
 
     private void cleanRepositories() {
+        userKeysRepository.deleteAll();
         userRepository.deleteAll();
     }
 
@@ -1,16 +1,23 @@
 package com.davidfandino.digital_signature_api.integrationTest;
 
+import com.davidfandino.digital_signature_api.config.DigestedDocumentHttpMessageConverter;
 import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
+import com.davidfandino.digital_signature_api.dto.VerifyDigestDto;
 import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
 import com.davidfandino.digital_signature_api.repository.UserRepository;
 import com.davidfandino.digital_signature_api.service.SignService;
+import com.davidfandino.digital_signature_api.service.SignatureVerificationService;
 import com.davidfandino.digital_signature_api.service.UserKeysService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
@@ -18,18 +25,28 @@ import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.MvcResult;
 
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.time.LocalDateTime;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 @SpringBootTest
 @AutoConfigureMockMvc
 public class VerifySignatureTest {
 
+    private static final MediaType PROTOBUF = DigestedDocumentHttpMessageConverter.APPLICATION_PROTOBUF;
+
     @Autowired
     private MockMvc mockMvc;
     @Autowired
@@ -40,6 +57,8 @@ public class VerifySignatureTest {
     private UserKeysService userKeysService;
     @Autowired
     private SignService signService;
+    @Autowired
+    private SignatureVerificationService signatureVerificationService;
 
 
     @BeforeEach
@@ -126,6 +145,214 @@ public class VerifySignatureTest {
     }
 
 
+    @Test
+    public void testVerifySignatureStreamSuccess() throws Exception {
+        VerifySignatureDto verifySignatureDto = signValidDocument();
+
+        mockMvc.perform(post("/api/signature/verify/" + verifySignatureDto.getNif())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header("X-Signature", verifySignatureDto.getSignatureBase64())
+                        .content(Base64.getDecoder().decode(verifySignatureDto.getDocumentBase64())))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+    }
+
+    @Test
+    public void testVerifySignatureStreamTamperedDocument() throws Exception {
+        VerifySignatureDto verifySignatureDto = signValidDocument();
+
+        mockMvc.perform(post("/api/signature/verify/" + verifySignatureDto.getNif())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header("X-Signature", verifySignatureDto.getSignatureBase64())
+                        .content("Tampered document".getBytes()))
+                .andExpect(status().isOk())
+                .andExpect(content().string("false"));
+    }
+
+    @Test
+    public void testVerifyDigestSuccess() throws Exception {
+        VerifySignatureDto verifySignatureDto = signValidDocument();
+        byte[] digest = MessageDigest.getInstance("SHA-256")
+                .digest(Base64.getDecoder().decode(verifySignatureDto.getDocumentBase64()));
+        VerifyDigestDto verifyDigestDto = new VerifyDigestDto(Base64.getEncoder().encodeToString(digest),
+                verifySignatureDto.getSignatureBase64(), verifySignatureDto.getNif());
+
+        mockMvc.perform(post("/api/signature/verify/digest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(verifyDigestDto)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = KeyAlgorithm.class, names = {"EC_P256", "ED25519"})
+    public void testSignAndVerifyWithKeyAlgorithm(KeyAlgorithm keyAlgorithm) throws Exception {
+        User user = createBaseUserInBBDD();
+        mockMvc.perform(post("/api/userkeys/generate-keys/" + user.getNif())
+                        .param("algorithm", keyAlgorithm.name()))
+                .andExpect(status().isOk());
+
+        byte[] document = new byte[2 * 1024 * 1024];
+        new Random(42).nextBytes(document);
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(user.getNif());
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString(document));
+
+        String signatureBase64 = mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(signDocumentDto)))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        VerifySignatureDto verifySignatureDto = new VerifySignatureDto(signDocumentDto.getDocumentBase64(),
+                signatureBase64, user.getNif());
+        mockMvc.perform(post("/api/signature/verify")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(verifySignatureDto)))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+
+        mockMvc.perform(post("/api/signature/verify/" + user.getNif())
+                        .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                        .header("X-Signature", signatureBase64)
+                        .content(document))
+                .andExpect(status().isOk())
+                .andExpect(content().string("true"));
+
+        assertTrue(signatureVerificationService.verifySignature(verifySignatureDto));
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = KeyAlgorithm.class, names = {"RSA_2048", "ED25519"})
+    public void testSignProtobufAndVerifyCborWithRawBytes(KeyAlgorithm keyAlgorithm) throws Exception {
+        User user = createBaseUserInBBDD();
+        userKeysService.generateKeys(user.getNif(), keyAlgorithm);
+        byte[] document = "Document to sign".getBytes();
+
+        ByteArrayOutputStream signRequest = new ByteArrayOutputStream();
+        writeProtobufField(signRequest, 1, user.getNif().getBytes(StandardCharsets.UTF_8));
+        writeProtobufField(signRequest, 2, document);
+        byte[] signResponse = mockMvc.perform(post("/api/sign")
+                        .contentType(PROTOBUF)
+                        .accept(PROTOBUF)
+                        .content(signRequest.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(PROTOBUF))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(0x0A, signResponse[0]);
+        int offset = 1;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = signResponse[offset++];
+            length |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                break;
+            }
+        }
+        byte[] signature = Arrays.copyOfRange(signResponse, offset, signResponse.length);
+        assertEquals(length, signature.length);
+        SignDocumentDto signDocumentDto = new SignDocumentDto();
+        signDocumentDto.setNif(user.getNif());
+        signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString(document));
+        assertEquals(signDocument(signDocumentDto), Base64.getEncoder().encodeToString(signature));
+
+        ObjectMapper cborMapper = new ObjectMapper(new CBORFactory());
+        byte[] verifyResponse = mockMvc.perform(post("/api/signature/verify")
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(MediaType.APPLICATION_CBOR)
+                        .content(cborMapper.writeValueAsBytes(Map.of("nif", user.getNif(),
+                                "document", document, "signature", signature))))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        assertEquals(Map.of("valid", true), cborMapper.readValue(verifyResponse, Map.class));
+    }
+
+    @Test
+    public void testSignAcceptingJsonReturnsRawBase64() throws Exception {
+        User user = createBaseUserInBBDD();
+        userKeysService.generateKeys(user.getNif());
+        SignDocumentDto signDocumentDto = generateSignDocumentDto(user.getNif());
+
+        mockMvc.perform(post("/api/sign")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(signDocumentDto)))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(content().string(signDocument(signDocumentDto)));
+    }
+
+    @Test
+    public void testVerifyProtobufInvalidSignature() throws Exception {
+        VerifySignatureDto verifySignatureDto = signValidDocument();
+
+        ByteArrayOutputStream verifyRequest = new ByteArrayOutputStream();
+        writeProtobufField(verifyRequest, 1, verifySignatureDto.getNif().getBytes(StandardCharsets.UTF_8));
+        writeProtobufField(verifyRequest, 2, "Tampered document".getBytes());
+        writeProtobufField(verifyRequest, 3, Base64.getDecoder().decode(verifySignatureDto.getSignatureBase64()));
+
+        mockMvc.perform(post("/api/signature/verify")
+                        .contentType(PROTOBUF)
+                        .accept(PROTOBUF)
+                        .content(verifyRequest.toByteArray()))
+                .andExpect(status().isOk())
+                .andExpect(content().bytes(new byte[0]));
+    }
+
+    @Test
+    public void testVerifyDigestNotSupportedForEd25519() throws Exception {
+        User user = createBaseUserInBBDD();
+        userKeysService.generateKeys(user.getNif(), KeyAlgorithm.ED25519);
+        VerifyDigestDto verifyDigestDto = new VerifyDigestDto(Base64.getEncoder().encodeToString(new byte[32]),
+                Base64.getEncoder().encodeToString(new byte[64]), user.getNif());
+
+        mockMvc.perform(post("/api/signature/verify/digest")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(new ObjectMapper().writeValueAsString(verifyDigestDto)))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    public void testVerifySignaturesBatch() throws Exception {
+        VerifySignatureDto validSignature = signValidDocument();
+        createBaseUserInBBDD("userWithoutKeys");
+        VerifySignatureDto withoutKeys = new VerifySignatureDto(validSignature.getDocumentBase64(),
+                validSignature.getSignatureBase64(), "userWithoutKeys");
+        VerifySignatureDto unknownUser = new VerifySignatureDto(validSignature.getDocumentBase64(),
+                validSignature.getSignatureBase64(), "fakeNif");
+        VerifySignatureDto invalidSignature = new VerifySignatureDto(
+                Base64.getEncoder().encodeToString("Tampered document".getBytes()),
+                validSignature.getSignatureBase64(), validSignature.getNif());
+
+        String batchJson = new ObjectMapper().writeValueAsString(
+                List.of(validSignature, withoutKeys, unknownUser, invalidSignature));
+
+        mockMvc.perform(post("/api/signature/verify/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(batchJson))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.length()").value(4))
+                .andExpect(jsonPath("$[0].valid").value(true))
+                .andExpect(jsonPath("$[1].error").value("User keys with nif userWithoutKeys have not been found"))
+                .andExpect(jsonPath("$[2].error").value("User with nif fakeNif not found."))
+                .andExpect(jsonPath("$[3].index").value(3))
+                .andExpect(jsonPath("$[3].valid").value(false));
+    }
+
+    private static void writeProtobufField(ByteArrayOutputStream message, int fieldNumber, byte[] value) {
+        message.write(fieldNumber << 3 | 2);
+        int length = value.length;
+        while ((length & ~0x7F) != 0) {
+            message.write((length & 0x7F) | 0x80);
+            length >>>= 7;
+        }
+        message.write(length);
+        message.writeBytes(value);
+    }
+
     private void cleanRepositories() {
         userKeysRepository.deleteAll();
         userRepository.deleteAll();
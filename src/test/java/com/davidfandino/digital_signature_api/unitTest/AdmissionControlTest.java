@@ -0,0 +1,168 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.limit.AdaptiveConcurrencyLimiter;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlInterceptor;
+import com.davidfandino.digital_signature_api.limit.AdmissionControlled;
+import com.davidfandino.digital_signature_api.limit.RequestBodyTimingFilter;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.ServletInputStream;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.DelegatingServletInputStream;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class AdmissionControlTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final SignatureMetrics signatureMetrics = new SignatureMetrics(meterRegistry);
+
+    @Test
+    public void tryAcquire_RejectsOverLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(2, 1, 10, 2.0);
+
+        assertTrue(limiter.tryAcquire());
+        assertTrue(limiter.tryAcquire());
+        assertFalse(limiter.tryAcquire());
+        limiter.release(FAST);
+        assertTrue(limiter.tryAcquire());
+        assertEquals(2, limiter.getInFlight());
+    }
+
+    @Test
+    public void release_DecreasesLimitWhenLatencyRises() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(20, 1, 100, 2.0);
+        sequential(limiter, FAST, 100);
+        assertEquals(20, limiter.getLimit());
+
+        sequential(limiter, SLOW, 50);
+
+        assertTrue(limiter.getLimit() < 20);
+    }
+
+    @Test
+    public void release_GrowsLimitOnlyWhileSaturated() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(10, 1, 100, 2.0);
+        sequential(limiter, FAST, 100);
+        assertEquals(10, limiter.getLimit());
+
+        while (limiter.tryAcquire()) {
+        }
+        for (int i = 0; i < 100; i++) {
+            limiter.release(FAST);
+            while (limiter.tryAcquire()) {
+            }
+        }
+
+        assertTrue(limiter.getLimit() > 10);
+    }
+
+    @Test
+    public void preHandle_RejectsWithRetryAfterWhenLimitIsReached() throws Exception {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(signatureMetrics, 1, 1, 1, 2.0,
+                Duration.ofSeconds(3));
+        HandlerMethod handler = new HandlerMethod(new Handler(), Handler.class.getMethod("sign"));
+        MockHttpServletRequest admittedRequest = new MockHttpServletRequest();
+        MockHttpServletResponse admittedResponse = new MockHttpServletResponse();
+
+        assertTrue(interceptor.preHandle(admittedRequest, admittedResponse, handler));
+
+        MockHttpServletResponse rejectedResponse = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), rejectedResponse, handler));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE.value(), rejectedResponse.getStatus());
+        assertEquals("3", rejectedResponse.getHeader(HttpHeaders.RETRY_AFTER));
+        assertEquals(AdmissionControlInterceptor.OVERLOADED_MESSAGE, rejectedResponse.getContentAsString());
+        assertEquals(1, meterRegistry.counter(SignatureMetrics.OUTCOME_COUNTER,
+                "operation", SignatureMetrics.SIGN, "outcome", "rejected").count());
+
+        interceptor.afterCompletion(admittedRequest, admittedResponse, handler, null);
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler));
+        assertEquals(1, meterRegistry.get(SignatureMetrics.IN_FLIGHT_GAUGE)
+                .tag("operation", SignatureMetrics.SIGN).gauge().value());
+    }
+
+    @Test
+    public void preHandle_AdmitsHandlersWithoutAnnotation() throws Exception {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(signatureMetrics, 1, 1, 1, 2.0,
+                Duration.ofSeconds(1));
+        HandlerMethod handler = new HandlerMethod(new Handler(), Handler.class.getMethod("status"));
+
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), handler));
+    }
+
+    @Test
+    public void preHandle_AdmitsUploadsThroughTheirOwnLimit() throws Exception {
+        AdmissionControlInterceptor interceptor = new AdmissionControlInterceptor(signatureMetrics, 1, 1, 1, 2.0,
+                Duration.ofSeconds(1));
+        HandlerMethod sign = new HandlerMethod(new Handler(), Handler.class.getMethod("sign"));
+        HandlerMethod signStream = new HandlerMethod(new Handler(), Handler.class.getMethod("signStream"));
+
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), signStream));
+        assertTrue(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), sign));
+        assertFalse(interceptor.preHandle(new MockHttpServletRequest(), new MockHttpServletResponse(), signStream));
+        assertEquals(1, meterRegistry.get(SignatureMetrics.IN_FLIGHT_GAUGE)
+                .tags("operation", SignatureMetrics.SIGN, "limit", AdmissionControlled.SIGN_STREAM).gauge().value());
+    }
+
+    @Test
+    public void bodyReadNanos_CountsTimeBlockedReadingTheBody() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/sign/12345678A") {
+            @Override
+            public ServletInputStream getInputStream() {
+                return new DelegatingServletInputStream(new ByteArrayInputStream(new byte[16])) {
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        LockSupport.parkNanos(SLOW);
+                        return super.read(b, off, len);
+                    }
+                };
+            }
+        };
+        AtomicLong bodyReadNanos = new AtomicLong();
+
+        new RequestBodyTimingFilter(true).doFilter(request, new MockHttpServletResponse(), (filteredRequest, response) -> {
+            filteredRequest.getInputStream().readAllBytes();
+            bodyReadNanos.set(RequestBodyTimingFilter.bodyReadNanos(filteredRequest));
+        });
+
+        assertTrue(bodyReadNanos.get() >= SLOW);
+        assertEquals(0, RequestBodyTimingFilter.bodyReadNanos(request));
+    }
+
+    private static void sequential(AdaptiveConcurrencyLimiter limiter, long latencyNanos, int requests) {
+        for (int i = 0; i < requests; i++) {
+            assertTrue(limiter.tryAcquire());
+            limiter.release(latencyNanos);
+        }
+    }
+
+    public static class Handler {
+
+        @AdmissionControlled(SignatureMetrics.SIGN)
+        public void sign() {
+        }
+
+        @AdmissionControlled(value = SignatureMetrics.SIGN, limit = AdmissionControlled.SIGN_STREAM)
+        public void signStream() {
+        }
+
+        public void status() {
+        }
+    }
+}
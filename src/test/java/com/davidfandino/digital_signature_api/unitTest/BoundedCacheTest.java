@@ -0,0 +1,106 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.cache.BoundedCache;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class BoundedCacheTest {
+
+    private final BoundedCache<String, String> cache = new BoundedCache<>("test", 10, Duration.ofMinutes(5));
+
+    @Test
+    public void get_LoadsOnceForConcurrentCallers() throws Exception {
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            Future<String> first = executor.submit(() -> cache.get("nif", key -> {
+                loads.incrementAndGet();
+                loaderStarted.countDown();
+                await(releaseLoader);
+                return "value-" + key;
+            }));
+            loaderStarted.await();
+
+            List<Future<String>> waiters = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                waiters.add(executor.submit(() -> cache.get("nif", key -> {
+                    loads.incrementAndGet();
+                    return "other";
+                })));
+            }
+            releaseLoader.countDown();
+
+            assertEquals("value-nif", first.get(5, TimeUnit.SECONDS));
+            for (Future<String> waiter : waiters) {
+                assertEquals("value-nif", waiter.get(5, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void get_RethrowsLoaderExceptionUnwrappedAndDoesNotCacheIt() {
+        UserNotFoundException exception = new UserNotFoundException("User not found");
+
+        assertSame(exception, assertThrows(UserNotFoundException.class,
+                () -> cache.get("nif", key -> { throw exception; })));
+
+        assertEquals("value", cache.get("nif", key -> "value"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void get_LoadsAgainForCallersWaitingOnAFailedLoad() throws Exception {
+        CountDownLatch loaderStarted = new CountDownLatch(1);
+        CountDownLatch releaseLoader = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> failing = executor.submit(() -> cache.get("nif", key -> {
+                loaderStarted.countDown();
+                await(releaseLoader);
+                throw new UserNotFoundException("User not found");
+            }));
+            loaderStarted.await();
+            Future<String> waiter = executor.submit(() -> cache.get("nif", key -> "value"));
+            releaseLoader.countDown();
+
+            ExecutionException exception = assertThrows(ExecutionException.class, () -> failing.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(UserNotFoundException.class, exception.getCause());
+            assertEquals("value", waiter.get(5, TimeUnit.SECONDS));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void invalidate_KeepsAValueStoredSinceItWasRead() {
+        cache.put("nif", "stale");
+        String read = cache.getIfPresent("nif");
+        cache.put("nif", "fresh");
+
+        assertFalse(cache.invalidate("nif", read));
+        assertEquals("fresh", cache.getIfPresent("nif"));
+        assertTrue(cache.invalidate("nif", "fresh"));
+        assertNull(cache.getIfPresent("nif"));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.dto.BulkKeyProvisioningJobDto;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.KeyGenerationJobStatus;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
+import com.davidfandino.digital_signature_api.service.BulkKeyProvisioningService;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Limit;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class BulkKeyProvisioningServiceTest {
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private UserKeysService userKeysService;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private TransactionTemplate transactionTemplate;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private BulkKeyProvisioningService bulkKeyProvisioningService;
+
+    private final CountDownLatch releaseProvisioning = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        // Finished jobs expire right away, so only queued and running jobs can be found
+        bulkKeyProvisioningService = new BulkKeyProvisioningService(userRepository, userKeysService, jdbcTemplate,
+                transactionTemplate, eventPublisher, new SignatureMetrics(new SimpleMeterRegistry()),
+                1, 16, 1, 100, Duration.ZERO);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        releaseProvisioning.countDown();
+        bulkKeyProvisioningService.stop();
+    }
+
+    @Test
+    public void submit_RejectsWhenTheQueueIsFullAndKeepsPendingJobs() throws Exception {
+        CountDownLatch provisioningStarted = new CountDownLatch(1);
+        when(userRepository.countUsersWithoutKeys()).thenAnswer(invocation -> {
+            provisioningStarted.countDown();
+            releaseProvisioning.await();
+            return 0L;
+        });
+        // Only reached if the jobs get to run before the test stops the service
+        lenient().when(userRepository.findUsersWithoutKeysAfter(anyString(), any(Limit.class))).thenReturn(List.of());
+
+        BulkKeyProvisioningJobDto running = bulkKeyProvisioningService.submit(null, KeyAlgorithm.RSA_2048);
+        assertTrue(provisioningStarted.await(10, TimeUnit.SECONDS));
+        BulkKeyProvisioningJobDto queued = bulkKeyProvisioningService.submit(null, KeyAlgorithm.RSA_2048);
+
+        assertThrows(RejectedExecutionException.class, () -> bulkKeyProvisioningService.submit(null, KeyAlgorithm.RSA_2048));
+        assertEquals(KeyGenerationJobStatus.RUNNING, bulkKeyProvisioningService.getJob(running.getJobId()).orElseThrow().getStatus());
+        assertEquals(KeyGenerationJobStatus.PENDING, bulkKeyProvisioningService.getJob(queued.getJobId()).orElseThrow().getStatus());
+    }
+}
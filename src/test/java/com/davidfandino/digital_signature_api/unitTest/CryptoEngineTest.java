@@ -0,0 +1,154 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
+import com.davidfandino.digital_signature_api.exception.DecryptKeyErrorException;
+import com.davidfandino.digital_signature_api.exception.UnsupportedKeyOperationException;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class CryptoEngineTest {
+
+    private static final UUID OWNER = UUID.randomUUID();
+
+    private final CryptoEngine cryptoEngine = new CryptoEngine("abcdefghijklmnop", 2);
+
+    @Test
+    public void encrypt_RoundTripsKeyMaterial() throws Exception {
+        KeyPair keyPair = KeyGeneratorUtil.generateKeyPair();
+        byte[] encrypted = cryptoEngine.encrypt(keyPair.getPrivate().getEncoded(), OWNER);
+
+        byte[] decrypted = cryptoEngine.decrypt(encrypted, OWNER);
+
+        assertArrayEquals(keyPair.getPrivate().getEncoded(), decrypted);
+        assertEquals(keyPair.getPrivate(), cryptoEngine.parsePrivateKey(decrypted, KeyAlgorithm.RSA_2048));
+        assertEquals(keyPair.getPublic(), cryptoEngine.parsePublicKey(keyPair.getPublic().getEncoded(), KeyAlgorithm.RSA_2048));
+    }
+
+    @Test
+    public void encrypt_WritesVersionedEnvelopeWithFreshNonce() throws Exception {
+        byte[] data = "private key".getBytes();
+
+        byte[] first = cryptoEngine.encrypt(data, OWNER);
+        byte[] second = cryptoEngine.encrypt(data, OWNER);
+
+        assertEquals(CryptoEngine.ENVELOPE_AES_GCM, first[0]);
+        assertEquals(1 + 12 + data.length + 16, first.length);
+        assertFalse(Arrays.equals(first, second));
+        assertArrayEquals(data, cryptoEngine.decrypt(second, OWNER));
+    }
+
+    @Test
+    public void decrypt_ReadsLegacyEcbKeys() throws Exception {
+        byte[] data = KeyGeneratorUtil.generateKeyPair().getPrivate().getEncoded();
+
+        assertArrayEquals(data, cryptoEngine.decrypt(legacyEncrypt(data), OWNER));
+    }
+
+    @Test
+    public void decrypt_ReadsLegacyEcbKeysStartingWithTheFormatByte() throws Exception {
+        Random random = new Random(42);
+        byte[] data = new byte[64];
+        byte[] legacy;
+        do {
+            random.nextBytes(data);
+            legacy = legacyEncrypt(data);
+        } while (legacy[0] != CryptoEngine.ENVELOPE_AES_GCM);
+
+        assertArrayEquals(data, cryptoEngine.decrypt(legacy, OWNER));
+    }
+
+    @Test
+    public void decrypt_RejectsTamperedEnvelope() throws Exception {
+        byte[] envelope = cryptoEngine.encrypt("private key".getBytes(), OWNER);
+        envelope[envelope.length - 1] ^= 1;
+
+        assertThrows(DecryptKeyErrorException.class, () -> cryptoEngine.decrypt(envelope, OWNER));
+    }
+
+    @Test
+    public void decrypt_RejectsEnvelopeOfAnotherUser() throws Exception {
+        byte[] envelope = cryptoEngine.encrypt(KeyGeneratorUtil.generateKeyPair().getPrivate().getEncoded(), OWNER);
+
+        assertThrows(DecryptKeyErrorException.class, () -> cryptoEngine.decrypt(envelope, UUID.randomUUID()));
+    }
+
+    @Test
+    public void decrypt_FailsWithAnotherMasterKey() throws Exception {
+        byte[] encrypted = new CryptoEngine("ponmlkjihgfedcba", 0).encrypt("private key".getBytes(), OWNER);
+
+        assertThrows(DecryptKeyErrorException.class, () -> cryptoEngine.decrypt(encrypted, OWNER));
+    }
+
+    @Test
+    public void withSignature_ReusesReleasedInstances() throws Exception {
+        PrivateKey privateKey = KeyGeneratorUtil.generateKeyPair().getPrivate();
+
+        Signature first = cryptoEngine.withSignature(privateKey, signature -> signature);
+        Signature second = cryptoEngine.withSignature(privateKey, signature -> signature);
+
+        assertSame(first, second);
+    }
+
+    @Test
+    public void withSignature_SignsAndVerifiesForEveryAlgorithm() throws Exception {
+        byte[] document = "Test document".getBytes();
+        for (KeyAlgorithm keyAlgorithm : KeyAlgorithm.values()) {
+            KeyPair keyPair = keyAlgorithm.generateKeyPair();
+
+            byte[] signatureBytes = cryptoEngine.withSignature(keyPair.getPrivate(), signature -> {
+                signature.initSign(keyPair.getPrivate());
+                signature.update(document);
+                return signature.sign();
+            });
+            boolean valid = cryptoEngine.withSignature(keyPair.getPublic(), signature -> {
+                signature.initVerify(keyPair.getPublic());
+                signature.update(document);
+                return signature.verify(signatureBytes);
+            });
+
+            assertTrue(valid, keyAlgorithm.name());
+        }
+    }
+
+    @Test
+    public void signDigest_VerifiesAsDocumentSignature() throws Exception {
+        KeyPair keyPair = KeyGeneratorUtil.generateKeyPair();
+        byte[] document = "Test document".getBytes();
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest(document);
+
+        byte[] signatureBytes = cryptoEngine.signDigest(digest, keyPair.getPrivate());
+
+        Signature signature = Signature.getInstance("SHA256withRSA");
+        signature.initVerify(keyPair.getPublic());
+        signature.update(document);
+        assertTrue(signature.verify(signatureBytes));
+        assertTrue(cryptoEngine.verifyDigest(digest, signatureBytes, keyPair.getPublic()));
+    }
+
+    @Test
+    public void signDigest_RejectsEd25519Keys() throws Exception {
+        KeyPair keyPair = KeyAlgorithm.ED25519.generateKeyPair();
+
+        assertThrows(UnsupportedKeyOperationException.class,
+                () -> cryptoEngine.signDigest(new byte[32], keyPair.getPrivate()));
+    }
+
+    private static byte[] legacyEncrypt(byte[] data) throws Exception {
+        Cipher cipher = Cipher.getInstance(EncryptionUtil.ALGORITHM);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec("abcdefghijklmnop".getBytes(), EncryptionUtil.ALGORITHM));
+        return cipher.doFinal(data);
+    }
+}
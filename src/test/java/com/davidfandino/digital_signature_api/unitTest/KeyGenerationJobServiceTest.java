@@ -0,0 +1,136 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.dto.KeyGenerationJobDto;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
+import com.davidfandino.digital_signature_api.model.KeyGenerationJobStatus;
+import com.davidfandino.digital_signature_api.service.KeyGenerationJobService;
+import com.davidfandino.digital_signature_api.service.UserKeysService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class KeyGenerationJobServiceTest {
+
+    @Mock
+    private UserKeysService userKeysService;
+
+    private KeyGenerationJobService keyGenerationJobService;
+
+    private final CountDownLatch releaseGeneration = new CountDownLatch(1);
+
+    @BeforeEach
+    public void setUp() {
+        keyGenerationJobService = new KeyGenerationJobService(userKeysService, 1, 1, 100, Duration.ofMinutes(5));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        releaseGeneration.countDown();
+        keyGenerationJobService.stop();
+    }
+
+    @Test
+    public void submit_CollapsesRequestsForTheSameNifIntoOneJob() throws Exception {
+        when(userKeysService.generateKeys("12345678A", KeyAlgorithm.RSA_2048)).thenAnswer(invocation -> {
+            releaseGeneration.await();
+            return null;
+        });
+
+        KeyGenerationJobDto first = keyGenerationJobService.submit("12345678A", KeyAlgorithm.RSA_2048);
+        KeyGenerationJobDto retry = keyGenerationJobService.submit("12345678A", KeyAlgorithm.RSA_2048);
+
+        assertEquals(first.getJobId(), retry.getJobId());
+        releaseGeneration.countDown();
+
+        KeyGenerationJobDto job = waitForCompletion(first.getJobId());
+        assertEquals(KeyGenerationJobStatus.COMPLETED, job.getStatus());
+        assertNotNull(job.getCompletionDate());
+        verify(userKeysService, times(1)).generateKeys("12345678A", KeyAlgorithm.RSA_2048);
+        verify(userKeysService, times(1)).findUserWithoutKeys("12345678A");
+    }
+
+    @Test
+    public void submit_RecordsFailedJob() throws Exception {
+        when(userKeysService.generateKeys("12345678A", KeyAlgorithm.EC_P256)).thenThrow(new RuntimeException("Error generating keys"));
+
+        KeyGenerationJobDto job = waitForCompletion(keyGenerationJobService.submit("12345678A", KeyAlgorithm.EC_P256).getJobId());
+
+        assertEquals(KeyGenerationJobStatus.FAILED, job.getStatus());
+        assertEquals("Error generating keys", job.getError());
+    }
+
+    @Test
+    public void submit_ValidatesUserBeforeQueueing() throws Exception {
+        when(userKeysService.findUserWithoutKeys("fakeNif")).thenThrow(new UserNotFoundException("User not found"));
+
+        assertThrows(UserNotFoundException.class, () -> keyGenerationJobService.submit("fakeNif", KeyAlgorithm.RSA_2048));
+        verify(userKeysService, never()).generateKeys(anyString(), any(KeyAlgorithm.class));
+    }
+
+    @Test
+    public void submit_RejectsWhenTheQueueIsFull() throws Exception {
+        when(userKeysService.generateKeys(anyString(), any(KeyAlgorithm.class))).thenAnswer(invocation -> {
+            releaseGeneration.await();
+            return null;
+        });
+
+        KeyGenerationJobDto running = keyGenerationJobService.submit("A", KeyAlgorithm.RSA_2048);
+        waitForStatus(running.getJobId(), KeyGenerationJobStatus.RUNNING);
+        keyGenerationJobService.submit("B", KeyAlgorithm.RSA_2048);
+
+        assertThrows(RejectedExecutionException.class, () -> keyGenerationJobService.submit("C", KeyAlgorithm.RSA_2048));
+        KeyGenerationJobDto retry = keyGenerationJobService.submit("A", KeyAlgorithm.RSA_2048);
+        assertEquals(running.getJobId(), retry.getJobId());
+    }
+
+    @Test
+    public void getJob_KeepsUnfinishedJobsPastTheRetention() throws Exception {
+        keyGenerationJobService.stop();
+        keyGenerationJobService = new KeyGenerationJobService(userKeysService, 1, 1, 100, Duration.ZERO);
+        CountDownLatch generationStarted = new CountDownLatch(1);
+        when(userKeysService.generateKeys(anyString(), any(KeyAlgorithm.class))).thenAnswer(invocation -> {
+            generationStarted.countDown();
+            releaseGeneration.await();
+            return null;
+        });
+
+        KeyGenerationJobDto running = keyGenerationJobService.submit("A", KeyAlgorithm.RSA_2048);
+        assertTrue(generationStarted.await(10, TimeUnit.SECONDS));
+        KeyGenerationJobDto queued = keyGenerationJobService.submit("B", KeyAlgorithm.RSA_2048);
+
+        assertEquals(KeyGenerationJobStatus.RUNNING, keyGenerationJobService.getJob(running.getJobId()).orElseThrow().getStatus());
+        assertEquals(KeyGenerationJobStatus.PENDING, keyGenerationJobService.getJob(queued.getJobId()).orElseThrow().getStatus());
+    }
+
+    private KeyGenerationJobDto waitForCompletion(UUID jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        KeyGenerationJobDto job = keyGenerationJobService.getJob(jobId).orElseThrow();
+        while (job.getCompletionDate() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+            job = keyGenerationJobService.getJob(jobId).orElseThrow();
+        }
+        return job;
+    }
+
+    private void waitForStatus(UUID jobId, KeyGenerationJobStatus status) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (keyGenerationJobService.getJob(jobId).orElseThrow().getStatus() != status
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.dto.KeyPairPoolStatsDto;
+import com.davidfandino.digital_signature_api.pool.KeyPairPool;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.security.KeyPair;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class KeyPairPoolTest {
+
+    private KeyPairPool keyPairPool;
+
+    @AfterEach
+    public void tearDown() {
+        keyPairPool.stop();
+    }
+
+    @Test
+    public void acquire_FallsBackToInlineGenerationWhenDisabled() throws Exception {
+        keyPairPool = new KeyPairPool(false, 4, 2, 1);
+        keyPairPool.start();
+
+        KeyPair keyPair = keyPairPool.acquire();
+
+        assertNotNull(keyPair);
+        assertEquals("RSA", keyPair.getPublic().getAlgorithm());
+        KeyPairPoolStatsDto stats = keyPairPool.stats();
+        assertEquals(0, stats.getHitCount());
+        assertEquals(1, stats.getMissCount());
+        assertEquals(0, stats.getDepth());
+    }
+
+    @Test
+    public void acquire_ServesPreGeneratedKeyPairsOnlyOnce() throws Exception {
+        keyPairPool = new KeyPairPool(true, 4, 2, 2);
+        long start = System.nanoTime();
+        keyPairPool.start();
+        waitUntilFull();
+        double elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000d;
+        KeyPairPoolStatsDto filled = keyPairPool.stats();
+        // The pool was refilling for part of the elapsed time only, so the rate is at least this average
+        assertTrue(filled.getRefillRatePerSecond() >= filled.getGeneratedCount() / elapsedSeconds);
+
+        Set<String> publicKeys = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            publicKeys.add(KeyGeneratorUtil.getPublicKeyBase64(keyPairPool.acquire().getPublic()));
+        }
+
+        assertEquals(4, publicKeys.size());
+        KeyPairPoolStatsDto stats = keyPairPool.stats();
+        assertTrue(stats.getHitCount() >= 1);
+        assertEquals(4, stats.getHitCount() + stats.getMissCount());
+        assertTrue(stats.getGeneratedCount() >= 4);
+        assertTrue(stats.getRefillRatePerSecond() > 0);
+    }
+
+    private void waitUntilFull() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (keyPairPool.stats().getDepth() < 4 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertEquals(4, keyPairPool.stats().getDepth());
+    }
+}
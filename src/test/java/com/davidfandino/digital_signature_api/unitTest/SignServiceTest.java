@@ -1,30 +1,39 @@
 package com.davidfandino.digital_signature_api.unitTest;
 
+import com.davidfandino.digital_signature_api.cache.PrivateKeyCache;
+import com.davidfandino.digital_signature_api.cache.SignatureCache;
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
 import com.davidfandino.digital_signature_api.dto.SignDocumentDto;
 import com.davidfandino.digital_signature_api.exception.DecryptKeyErrorException;
 import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
 import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.repository.NifPrivateKey;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
 import com.davidfandino.digital_signature_api.service.SignService;
 import com.davidfandino.digital_signature_api.service.UserService;
-import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
 import java.security.*;
+import java.time.Duration;
 import java.util.Base64;
 import java.util.Optional;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -33,29 +42,43 @@ public class SignServiceTest {
     @Mock
     private UserKeysRepository userKeysRepository;
 
-    @Mock
-    private EncryptionUtil encryptionUtil;
+    @Spy
+    private CryptoEngine cryptoEngine = new CryptoEngine("abcdefghijklmnop", 0);
 
     @Mock
     private UserService userService;
 
+    @Spy
+    private PrivateKeyCache privateKeyCache = new PrivateKeyCache(100, Duration.ofMinutes(5));
+
+    @Spy
+    private SignatureCache signatureCache = new SignatureCache(true, 100, Duration.ofMinutes(5));
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private SignatureMetrics signatureMetrics = new SignatureMetrics(meterRegistry);
+
     @InjectMocks
     private SignService signService;
 
     private User user;
     private UserKeys userKeys;
     private SignDocumentDto signDocumentDto;
-    private String secretKey = "abcdefghijklmnop";
-    private String privateKeyBase64;
+    private byte[] privateKeyBytes;
 
     @BeforeEach
-    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+    public void setUp() {
+        user = new User();
+        user.setUserUUID(UUID.randomUUID());
+        user.setNif("12345678A");
+        user.setFirstName("John");
+
         try {
             KeyPair keyPair = KeyGeneratorUtil.generateKeyPair();
-            privateKeyBase64 = KeyGeneratorUtil.getPrivateKeyBase64(keyPair.getPrivate());
+            privateKeyBytes = keyPair.getPrivate().getEncoded();
 
-            SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), EncryptionUtil.ALGORITHM);
-            String encryptedPrivateKey = encryptionUtil.encrypt(privateKeyBase64, secretKeySpec);
+            byte[] encryptedPrivateKey = cryptoEngine.encrypt(privateKeyBytes, user.getUserUUID());
             userKeys = new UserKeys();
             userKeys.setPrivateKey(encryptedPrivateKey);
             userKeys.setUser(user);
@@ -64,66 +87,181 @@ public class SignServiceTest {
             fail("Init test error");
         }
 
-        user = new User();
-        user.setUserUUID(UUID.randomUUID());
-        user.setNif("12345678A");
-        user.setFirstName("John");
-
         signDocumentDto = new SignDocumentDto();
         signDocumentDto.setDocumentBase64(Base64.getEncoder().encodeToString("Test document".getBytes()));
         signDocumentDto.setNif(user.getNif());
-
-        signService.getClass().getDeclaredField("secretKey").set(signService, secretKey);
     }
 
 
     @Test
     public void signDocument_Success() throws Exception {
-        when(userService.getUserByNif(user.getNif())).thenReturn(user);
-        when(userKeysRepository.findByUser(user)).thenReturn(Optional.of(userKeys));
-
-        SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), encryptionUtil.ALGORITHM);
-        when(encryptionUtil.decrypt(userKeys.getPrivateKey(), secretKeySpec)).thenReturn(privateKeyBase64);
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
 
         String signature = signService.signDocument(signDocumentDto);
 
         assertNotNull(signature);
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, times(1)).findByUser(user);
+        verify(userKeysRepository, times(1)).findPrivateKeyByNif(user.getNif());
+        verify(userService, never()).existUserWithNif(anyString());
     }
 
     @Test
     public void signDocument_UserNotFoundException() {
-        when(userService.getUserByNif(user.getNif())).thenThrow(new UserNotFoundException("User not found"));
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.empty());
+        when(userService.existUserWithNif(user.getNif())).thenReturn(false);
+
         assertThrows(UserNotFoundException.class, () -> signService.signDocument(signDocumentDto));
 
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, never()).findByUser(any(User.class));
+        verify(userKeysRepository, times(1)).findPrivateKeyByNif(user.getNif());
+        verify(userService, times(1)).existUserWithNif(user.getNif());
     }
 
     @Test
     public void signDocument_UserKeysNotFoundException() {
-        when(userService.getUserByNif(user.getNif())).thenReturn(user);
-        when(userKeysRepository.findByUser(user)).thenReturn(Optional.empty());
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.empty());
+        when(userService.existUserWithNif(user.getNif())).thenReturn(true);
 
         assertThrows(UserKeysNotFoundException.class, () -> signService.signDocument(signDocumentDto));
 
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, times(1)).findByUser(user);
+        verify(userKeysRepository, times(1)).findPrivateKeyByNif(user.getNif());
+        verify(userService, times(1)).existUserWithNif(user.getNif());
     }
 
     @Test
     public void signDocument_FailureToDecryptPrivateKey() {
-        when(userService.getUserByNif(user.getNif())).thenReturn(user);
-        when(userKeysRepository.findByUser(user)).thenReturn(Optional.of(userKeys));
-
-        SecretKeySpec secretKeySpec = new SecretKeySpec(secretKey.getBytes(), EncryptionUtil.ALGORITHM);
-        when(encryptionUtil.decrypt(userKeys.getPrivateKey(), secretKeySpec)).thenThrow(new DecryptKeyErrorException("Error decrypting private key"));
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+        doThrow(new DecryptKeyErrorException("Error decrypting private key")).when(cryptoEngine).decrypt(any(), any());
 
         assertThrows(DecryptKeyErrorException.class, () -> signService.signDocument(signDocumentDto));
 
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, times(1)).findByUser(user);
+        verify(userKeysRepository, times(1)).findPrivateKeyByNif(user.getNif());
+        verify(userService, never()).existUserWithNif(anyString());
+    }
+
+    @Test
+    public void signDocument_ReusesCachedPrivateKey() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+
+        String firstSignature = signService.signDocument(signDocumentDto);
+        String secondSignature = signService.signDocument(signDocumentDto);
+
+        assertEquals(firstSignature, secondSignature);
+        verify(userKeysRepository, times(1)).findPrivateKeyByNif(user.getNif());
+        verify(userService, never()).existUserWithNif(anyString());
+        verify(cryptoEngine, times(1)).decrypt(userKeys.getPrivateKey(), user.getUserUUID());
+        assertEquals(1, privateKeyCache.stats().getHitCount());
+        assertEquals(1, privateKeyCache.stats().getMissCount());
+    }
+
+    @Test
+    public void signDocument_ReusesCachedSignature() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+
+        String firstSignature = signService.signDocument(signDocumentDto);
+        String secondSignature = signService.signDocument(signDocumentDto);
+
+        assertEquals(firstSignature, secondSignature);
+        verify(cryptoEngine, times(1)).withSignature(any(), any());
+        assertEquals(1, signatureCache.stats().getHitCount());
+        assertEquals(1, signatureCache.stats().getMissCount());
+    }
+
+    @Test
+    public void signDigest_ServesSignatureCachedForDocument() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+
+        byte[] documentBytes = Base64.getDecoder().decode(signDocumentDto.getDocumentBase64());
+        byte[] documentDigest = MessageDigest.getInstance("SHA-256").digest(documentBytes);
+        String documentSignature = signService.signDocument(signDocumentDto);
+
+        assertEquals(documentSignature, signService.signDigest(user.getNif(), documentDigest));
+        verify(cryptoEngine, never()).signDigest(any(), any());
+    }
+
+    @Test
+    public void signDocument_DoesNotServeSignatureOfReplacedKey() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+        String firstSignature = signService.signDocument(signDocumentDto);
+
+        userKeys.setPrivateKey(cryptoEngine.encrypt(KeyGeneratorUtil.generateKeyPair().getPrivate().getEncoded(),
+                user.getUserUUID()));
+        privateKeyCache.invalidate(user.getNif());
+        String secondSignature = signService.signDocument(signDocumentDto);
+
+        assertNotEquals(firstSignature, secondSignature);
+        assertEquals(0, signatureCache.stats().getHitCount());
+        assertEquals(2, signatureCache.stats().getMissCount());
+    }
+
+    @Test
+    public void signDocumentStream_MatchesJsonSignature() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+
+        byte[] documentBytes = Base64.getDecoder().decode(signDocumentDto.getDocumentBase64());
+        String streamSignature = signService.signDocument(user.getNif(), new ByteArrayInputStream(documentBytes));
+
+        assertEquals(signService.signDocument(signDocumentDto), streamSignature);
+    }
+
+    @Test
+    public void signDigest_MatchesDocumentSignature() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+
+        byte[] documentBytes = Base64.getDecoder().decode(signDocumentDto.getDocumentBase64());
+        byte[] documentDigest = MessageDigest.getInstance("SHA-256").digest(documentBytes);
+
+        assertEquals(signService.signDocument(signDocumentDto), signService.signDigest(user.getNif(), documentDigest));
+    }
+
+    @Test
+    public void signDocument_RecordsStageMetrics() throws Exception {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.of(nifPrivateKey()));
+
+        signService.signDocument(signDocumentDto);
+
+        for (String stage : new String[]{SignatureMetrics.STAGE_TOTAL, SignatureMetrics.STAGE_KEY_RESOLUTION,
+                SignatureMetrics.STAGE_KEYS_LOOKUP, SignatureMetrics.STAGE_DECRYPT,
+                SignatureMetrics.STAGE_PARSE, SignatureMetrics.STAGE_CRYPTO}) {
+            assertEquals(1, meterRegistry.get(SignatureMetrics.STAGE_TIMER)
+                    .tags("operation", SignatureMetrics.SIGN, "stage", stage).timer().count(), stage);
+        }
+        assertEquals(Base64.getDecoder().decode(signDocumentDto.getDocumentBase64()).length,
+                meterRegistry.get(SignatureMetrics.DOCUMENT_SIZE_SUMMARY).summary().totalAmount());
+        assertEquals(1, meterRegistry.get(SignatureMetrics.OUTCOME_COUNTER)
+                .tags("operation", SignatureMetrics.SIGN, "outcome", "success").counter().count());
+    }
+
+    @Test
+    public void signDocument_CountsFailureOutcome() {
+        when(userKeysRepository.findPrivateKeyByNif(user.getNif())).thenReturn(Optional.empty());
+
+        assertThrows(UserNotFoundException.class, () -> signService.signDocument(signDocumentDto));
+
+        assertEquals(1, meterRegistry.get(SignatureMetrics.OUTCOME_COUNTER)
+                .tags("operation", SignatureMetrics.SIGN, "outcome", "user_not_found").counter().count());
+    }
+
+    private NifPrivateKey nifPrivateKey() {
+        return new NifPrivateKey() {
+            @Override
+            public String getNif() {
+                return user.getNif();
+            }
+
+            @Override
+            public UUID getUserUUID() {
+                return user.getUserUUID();
+            }
+
+            @Override
+            public byte[] getPrivateKey() {
+                return userKeys.getPrivateKey();
+            }
+
+            @Override
+            public KeyAlgorithm getAlgorithm() {
+                return userKeys.getAlgorithm();
+            }
+        };
     }
 
 }
@@ -1,25 +1,40 @@
 package com.davidfandino.digital_signature_api.unitTest;
 
+import com.davidfandino.digital_signature_api.cache.PublicKeyCache;
+import com.davidfandino.digital_signature_api.cache.VerificationCache;
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
+import com.davidfandino.digital_signature_api.dto.BatchVerifyResultDto;
 import com.davidfandino.digital_signature_api.dto.VerifySignatureDto;
 import com.davidfandino.digital_signature_api.exception.UserKeysNotFoundException;
+import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.repository.NifPublicKey;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
+import com.davidfandino.digital_signature_api.repository.UserRepository;
 import com.davidfandino.digital_signature_api.service.SignatureVerificationService;
 import com.davidfandino.digital_signature_api.service.UserService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 
 import java.security.*;
+import java.time.Duration;
 import java.util.Base64;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +46,23 @@ public class SignatureVerificationServiceTest {
     @Mock
     private UserService userService;
 
+    @Mock
+    private UserRepository userRepository;
+
+    @Spy
+    private PublicKeyCache publicKeyCache = new PublicKeyCache(100, Duration.ofMinutes(5));
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private SignatureMetrics signatureMetrics = new SignatureMetrics(meterRegistry);
+
+    @Spy
+    private CryptoEngine cryptoEngine = new CryptoEngine("abcdefghijklmnop", 0);
+
+    @Spy
+    private VerificationCache verificationCache = new VerificationCache(true, 100, Duration.ofMinutes(5));
+
     @InjectMocks
     private SignatureVerificationService signatureVerificationService;
 
@@ -45,11 +77,9 @@ public class SignatureVerificationServiceTest {
         user.setNif("12345678A");
 
         KeyPair keyPair = KeyGeneratorUtil.generateKeyPair();
-        String publicKeyBase64 = KeyGeneratorUtil.getPublicKeyBase64(keyPair.getPublic());
-        String privateKeyBase64 = KeyGeneratorUtil.getPrivateKeyBase64(keyPair.getPrivate());
 
         userKeys = new UserKeys();
-        userKeys.setPublicKey(publicKeyBase64);
+        userKeys.setPublicKey(keyPair.getPublic().getEncoded());
         userKeys.setUser(user);
 
         String document = "Test document";
@@ -72,13 +102,11 @@ public class SignatureVerificationServiceTest {
 
     @Test
     public void verifySignature_Success() throws Exception {
-        when(userService.getUserByNif(user.getNif())).thenReturn(user);
-        when(userKeysRepository.findByUser(user)).thenReturn(Optional.of(userKeys));
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.of(nifPublicKey()));
 
         KeyPair keyPair = KeyGeneratorUtil.generateKeyPair();
-        String publicKeyBase64 = KeyGeneratorUtil.getPublicKeyBase64(keyPair.getPublic());
 
-        userKeys.setPublicKey(publicKeyBase64);
+        userKeys.setPublicKey(keyPair.getPublic().getEncoded());
 
         String document = "Test document";
         byte[] documentBytes = document.getBytes();
@@ -97,30 +125,35 @@ public class SignatureVerificationServiceTest {
         boolean isValid = signatureVerificationService.verifySignature(verifySignatureDto);
 
         assertTrue(isValid);
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, times(1)).findByUser(user);
+        verify(userKeysRepository, times(1)).findPublicKeyByNif(user.getNif());
     }
 
     @Test
     public void verifySignature_UserKeysNotFoundException() {
-        when(userService.getUserByNif(user.getNif())).thenReturn(user);
-        when(userKeysRepository.findByUser(user)).thenReturn(Optional.empty());
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.empty());
+        when(userService.existUserWithNif(user.getNif())).thenReturn(true);
 
         assertThrows(UserKeysNotFoundException.class, () -> signatureVerificationService.verifySignature(verifySignatureDto));
 
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, times(1)).findByUser(user);
+        verify(userKeysRepository, times(1)).findPublicKeyByNif(user.getNif());
+        verify(userService, times(1)).existUserWithNif(user.getNif());
+    }
+
+    @Test
+    public void verifySignature_UserNotFoundException() {
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.empty());
+        when(userService.existUserWithNif(user.getNif())).thenReturn(false);
+
+        assertThrows(UserNotFoundException.class, () -> signatureVerificationService.verifySignature(verifySignatureDto));
     }
 
     @Test
     public void verifySignature_InvalidSignature() throws Exception {
-        when(userService.getUserByNif(user.getNif())).thenReturn(user);
-        when(userKeysRepository.findByUser(user)).thenReturn(Optional.of(userKeys));
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.of(nifPublicKey()));
 
         KeyPair keyPair = KeyGeneratorUtil.generateKeyPair();
-        String publicKeyBase64 = KeyGeneratorUtil.getPublicKeyBase64(keyPair.getPublic());
 
-        userKeys.setPublicKey(publicKeyBase64);
+        userKeys.setPublicKey(keyPair.getPublic().getEncoded());
 
         String document = "Test document";
         byte[] documentBytes = document.getBytes();
@@ -143,8 +176,87 @@ public class SignatureVerificationServiceTest {
 
         // Verificar que la firma es inválida
         assertFalse(isValid);
-        verify(userService, times(1)).getUserByNif(user.getNif());
-        verify(userKeysRepository, times(1)).findByUser(user);
+        verify(userKeysRepository, times(1)).findPublicKeyByNif(user.getNif());
+    }
+
+    @Test
+    public void verifySignature_ReusesCachedPublicKey() throws Exception {
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.of(nifPublicKey()));
+
+        assertTrue(signatureVerificationService.verifySignature(verifySignatureDto));
+        assertTrue(signatureVerificationService.verifySignature(verifySignatureDto));
+
+        verify(userKeysRepository, times(1)).findPublicKeyByNif(user.getNif());
+        assertEquals(0.5, publicKeyCache.stats().getHitRatio());
+    }
+
+    @Test
+    public void verifySignature_ReusesCachedOutcome() throws Exception {
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.of(nifPublicKey()));
+        VerifySignatureDto tampered = new VerifySignatureDto(
+                Base64.getEncoder().encodeToString("Tampered".getBytes()),
+                verifySignatureDto.getSignatureBase64(), user.getNif());
+
+        assertTrue(signatureVerificationService.verifySignature(verifySignatureDto));
+        assertFalse(signatureVerificationService.verifySignature(tampered));
+        assertTrue(signatureVerificationService.verifySignature(verifySignatureDto));
+        assertFalse(signatureVerificationService.verifySignature(tampered));
+
+        verify(cryptoEngine, times(2)).withSignature(any(), any());
+        assertEquals(2, verificationCache.stats().getHitCount());
+        assertEquals(2, verificationCache.stats().getMissCount());
+    }
+
+    @Test
+    public void verifySignature_DoesNotServeOutcomeOfReplacedKey() throws Exception {
+        when(userKeysRepository.findPublicKeyByNif(user.getNif())).thenReturn(Optional.of(nifPublicKey()));
+        assertTrue(signatureVerificationService.verifySignature(verifySignatureDto));
+
+        userKeys.setPublicKey(KeyGeneratorUtil.generateKeyPair().getPublic().getEncoded());
+        publicKeyCache.invalidate(user.getNif());
+
+        assertFalse(signatureVerificationService.verifySignature(verifySignatureDto));
+        assertEquals(0, verificationCache.stats().getHitCount());
+    }
+
+    @Test
+    public void verifySignatures_LoadsPublicKeysWithSingleQuery() {
+        when(userKeysRepository.findPublicKeysByNifIn(anySet())).thenReturn(List.of(nifPublicKey()));
+        when(userRepository.findNifsByNifIn(Set.of("unknownNif"))).thenReturn(List.of());
+
+        VerifySignatureDto tampered = new VerifySignatureDto(
+                Base64.getEncoder().encodeToString("Tampered".getBytes()),
+                verifySignatureDto.getSignatureBase64(), user.getNif());
+        VerifySignatureDto unknownUser = new VerifySignatureDto(
+                verifySignatureDto.getDocumentBase64(), verifySignatureDto.getSignatureBase64(), "unknownNif");
+
+        List<BatchVerifyResultDto> results = signatureVerificationService.verifySignatures(
+                List.of(verifySignatureDto, tampered, unknownUser, verifySignatureDto));
+
+        assertEquals(4, results.size());
+        assertTrue(results.get(0).getValid());
+        assertFalse(results.get(1).getValid());
+        assertEquals("User with nif unknownNif not found.", results.get(2).getError());
+        assertTrue(results.get(3).getValid());
+        verify(userKeysRepository, times(1)).findPublicKeysByNifIn(anySet());
+        verify(userKeysRepository, never()).findPublicKeyByNif(anyString());
+        verify(userService, never()).existUserWithNif(anyString());
+    }
+
+    private NifPublicKey nifPublicKey() {
+        return new NifPublicKey() {
+            public String getNif() {
+                return user.getNif();
+            }
+
+            public byte[] getPublicKey() {
+                return userKeys.getPublicKey();
+            }
+
+            public KeyAlgorithm getAlgorithm() {
+                return null;
+            }
+        };
     }
 
-}
\ No newline at end of file
+}
@@ -0,0 +1,111 @@
+package com.davidfandino.digital_signature_api.unitTest;
+
+import com.davidfandino.digital_signature_api.cache.SingleFlight;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SingleFlightTest {
+
+    private static final int FOLLOWERS = 8;
+
+    private final AtomicInteger coalesced = new AtomicInteger();
+    private final SingleFlight<String, String> singleFlight = new SingleFlight<>(coalesced::incrementAndGet);
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void execute_SharesInFlightCallBetweenConcurrentCallers() throws Exception {
+        Object version = new Object();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", version, () -> {
+            calls.incrementAndGet();
+            release.await();
+            return "signature";
+        }));
+        waitUntil(() -> calls.get() == 1);
+        List<Future<String>> followers = new ArrayList<>();
+        for (int i = 0; i < FOLLOWERS; i++) {
+            followers.add(executor.submit(() -> singleFlight.execute("key", version, () -> {
+                calls.incrementAndGet();
+                return "other";
+            })));
+        }
+        waitUntil(() -> coalesced.get() == FOLLOWERS);
+        release.countDown();
+
+        assertEquals("signature", leader.get(5, TimeUnit.SECONDS));
+        for (Future<String> follower : followers) {
+            assertEquals("signature", follower.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void execute_SharesFailureWithWaitingCallers() throws Exception {
+        Object version = new Object();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", version, () -> {
+            started.countDown();
+            release.await();
+            throw new IllegalStateException("Signing failed");
+        }));
+        started.await();
+        Future<String> follower = executor.submit(() -> singleFlight.execute("key", version, () -> "other"));
+        waitUntil(() -> coalesced.get() == 1);
+        release.countDown();
+
+        for (Future<String> result : List.of(leader, follower)) {
+            ExecutionException e = assertThrows(ExecutionException.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(IllegalStateException.class, e.getCause());
+        }
+    }
+
+    @Test
+    public void execute_DoesNotShareCallsOfAnotherVersion() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        Future<String> leader = executor.submit(() -> singleFlight.execute("key", new Object(), () -> {
+            started.countDown();
+            release.await();
+            return "old key";
+        }));
+        started.await();
+
+        assertEquals("new key", singleFlight.execute("key", new Object(), () -> "new key"));
+        release.countDown();
+        assertEquals("old key", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(0, coalesced.get());
+    }
+
+    @Test
+    public void execute_KeepsNothingOnceCompleted() throws Exception {
+        Object version = new Object();
+
+        assertEquals("first", singleFlight.execute("key", version, () -> "first"));
+        assertEquals("second", singleFlight.execute("key", version, () -> "second"));
+    }
+
+    private static void waitUntil(Callable<Boolean> condition) throws Exception {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.call()) {
+            assertTrue(System.nanoTime() < deadline, "Timed out");
+            Thread.sleep(5);
+        }
+    }
+}
@@ -1,21 +1,29 @@
 package com.davidfandino.digital_signature_api.unitTest;
 
+import com.davidfandino.digital_signature_api.crypto.CryptoEngine;
 import com.davidfandino.digital_signature_api.exception.UserKeysAlreadyGeneratedException;
 import com.davidfandino.digital_signature_api.exception.UserNotFoundException;
+import com.davidfandino.digital_signature_api.metrics.SignatureMetrics;
+import com.davidfandino.digital_signature_api.model.KeyAlgorithm;
 import com.davidfandino.digital_signature_api.model.User;
 import com.davidfandino.digital_signature_api.model.UserKeys;
+import com.davidfandino.digital_signature_api.pool.KeyPairPool;
 import com.davidfandino.digital_signature_api.repository.UserKeysRepository;
 import com.davidfandino.digital_signature_api.service.UserKeysService;
 import com.davidfandino.digital_signature_api.service.UserService;
-import com.davidfandino.digital_signature_api.utils.EncryptionUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
 
+import java.util.Arrays;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -31,30 +39,35 @@ public class UserKeysServiceTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private CryptoEngine cryptoEngine = new CryptoEngine("mySecretKey12345", 0);
+
     @Mock
-    private EncryptionUtil encryptionUtil;  // Simular EncryptionUtil
+    private KeyPairPool keyPairPool;
+
+    private SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Spy
+    private SignatureMetrics signatureMetrics = new SignatureMetrics(meterRegistry);
 
     @InjectMocks
     private UserKeysService userKeysService;
 
     private User user;
-    private String secretKey = "mySecretKey12345";
 
     @BeforeEach
-    public void setUp() throws NoSuchFieldException, IllegalAccessException {
+    public void setUp() {
         user = new User();
         user.setUserUUID(UUID.randomUUID());
         user.setNif("12345678A");
         user.setFirstName("John Doe");
-
-        userKeysService.getClass().getDeclaredField("secretKey").set(userKeysService, secretKey);
     }
 
     @Test
     public void generateKeys_Success() throws Exception {
         when(userService.getUserByNif(user.getNif())).thenReturn(user);
         when(userKeysRepository.existsByUser(user)).thenReturn(false);
-        when(encryptionUtil.encrypt(anyString(), any())).thenReturn("encryptedPrivateKey");
+        when(keyPairPool.acquire()).thenReturn(KeyGeneratorUtil.generateKeyPair());
         when(userKeysRepository.save(any(UserKeys.class)))
                 .thenAnswer(invocation -> invocation.getArgument(0));
 
@@ -64,11 +77,25 @@ public class UserKeysServiceTest {
         assertNotNull(generatedUserKeys.getPublicKey());
         assertNotNull(generatedUserKeys.getPrivateKey());
 
-        assertNotEquals(generatedUserKeys.getPublicKey(), generatedUserKeys.getPrivateKey());
+        assertFalse(Arrays.equals(generatedUserKeys.getPublicKey(), generatedUserKeys.getPrivateKey()));
 
         verify(userKeysRepository, times(1)).save(any(UserKeys.class));
     }
 
+    @Test
+    public void generateKeys_EcKeysAreGeneratedInline() throws Exception {
+        when(userService.getUserByNif(user.getNif())).thenReturn(user);
+        when(userKeysRepository.existsByUser(user)).thenReturn(false);
+        when(userKeysRepository.save(any(UserKeys.class)))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        UserKeys generatedUserKeys = userKeysService.generateKeys(user.getNif(), KeyAlgorithm.EC_P256);
+
+        assertEquals(KeyAlgorithm.EC_P256, generatedUserKeys.getAlgorithm());
+        assertNotNull(generatedUserKeys.getPublicKey());
+        verify(keyPairPool, never()).acquire();
+    }
+
     @Test
     public void generateKeys_UserNotFoundException() {
         when(userService.getUserByNif(user.getNif())).thenThrow(new UserNotFoundException("User not found"));
@@ -81,7 +108,7 @@ public class UserKeysServiceTest {
 
 
     @Test
-    public void generateKeys_UserKeysAlreadyGeneratedException() {
+    public void generateKeys_UserKeysAlreadyGeneratedException() throws Exception {
         User userWithGeneratedKeys = cloneUser(user);
         when(userService.getUserByNif(userWithGeneratedKeys.getNif())).thenReturn(userWithGeneratedKeys);
 
@@ -91,20 +118,32 @@ public class UserKeysServiceTest {
 
         assertThrows(UserKeysAlreadyGeneratedException.class, () -> userKeysService.generateKeys(userWithGeneratedKeys.getNif()));
         verify(userKeysRepository, never()).save(any(UserKeys.class));
+        verify(keyPairPool, never()).acquire();
         assertEquals(userWithGeneratedKeys.getNif(), userCaptor.getValue().getNif());
     }
 
+    @Test
+    public void generateKeys_KeysStoredConcurrentlyAreReportedAsAlreadyGenerated() throws Exception {
+        when(userService.getUserByNif(user.getNif())).thenReturn(user);
+        when(userKeysRepository.existsByUser(user)).thenReturn(false, true);
+        when(keyPairPool.acquire()).thenReturn(KeyGeneratorUtil.generateKeyPair());
+        when(userKeysRepository.save(any(UserKeys.class))).thenThrow(new DuplicateKeyException("Duplicate user_uuid"));
 
-    private User cloneUser(User originalUser) {
-        UserKeys clonedUserKeys = null;
-        if (originalUser.getUserKeys() != null) {
-            clonedUserKeys = new UserKeys();
-            clonedUserKeys.setUserKeyUUID(originalUser.getUserKeys().getUserKeyUUID());
-            clonedUserKeys.setPublicKey(originalUser.getUserKeys().getPublicKey());
-            clonedUserKeys.setPrivateKey(originalUser.getUserKeys().getPrivateKey());
-            clonedUserKeys.setUser(null);
-        }
+        assertThrows(UserKeysAlreadyGeneratedException.class, () -> userKeysService.generateKeys(user.getNif()));
+    }
 
+    @Test
+    public void generateKeys_OtherIntegrityViolationsAreRethrown() throws Exception {
+        when(userService.getUserByNif(user.getNif())).thenReturn(user);
+        when(userKeysRepository.existsByUser(user)).thenReturn(false);
+        when(keyPairPool.acquire()).thenReturn(KeyGeneratorUtil.generateKeyPair());
+        when(userKeysRepository.save(any(UserKeys.class))).thenThrow(new DataIntegrityViolationException("Missing user"));
+
+        assertThrows(DataIntegrityViolationException.class, () -> userKeysService.generateKeys(user.getNif()));
+    }
+
+
+    private User cloneUser(User originalUser) {
         User clonedUser = new User();
         clonedUser.setUserUUID(originalUser.getUserUUID());
         clonedUser.setFirstName(originalUser.getFirstName());
@@ -112,11 +151,6 @@ public class UserKeysServiceTest {
         clonedUser.setNif(originalUser.getNif());
         clonedUser.setCreationDate(originalUser.getCreationDate());
 
-        if (clonedUserKeys != null) {
-            clonedUserKeys.setUser(clonedUser);
-            clonedUser.setUserKeys(clonedUserKeys);
-        }
-
         return clonedUser;
     }
 